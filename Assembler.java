@@ -1,24 +1,82 @@
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Scanner;
-import java.util.StringTokenizer;
 
 /**
  * Handles the driving portion of the program, assembling ASM code into HACK machine language.
- * The first pass handles translating symbols such as Labels and Variables into integers.
- * The second pass handles translating ASM with integers into HACK machine language.
+ * The first pass handles translating symbols such as Labels and Variables into integers, encoding a list of instructions.
+ * The second pass handles writing that list of instructions out as HACK machine language.
  * @author Mark Alan Vincent II
  * @version 1.0
  */
 public class Assembler {
 
+    // constants, the largest value an A instruction can load.
+    static final int MAX_ADDRESS = 32767;
+
+    // the input name that stands for standard in.
+    static final String STANDARD_IN = "-";
+
+    // the C instruction tables, read only once built so they are shared by every assembly.
+    static final CInstructionMapper MAPPER = new CInstructionMapper();
+
     // Main Method of the Assembler.
+    // With no files, asks for the path of a single ASM file. Otherwise assembles every file, directory and glob
+    // given, see BatchAssembler, or keeps re-assembling them with --watch (the current directory if none are given),
+    // see WatchAssembler. With --serve, assembles programs sent over a socket instead, see AssemblyServer.
+    // Given only -, assembles standard in to standard out as it arrives, see StreamingAssembler. With --link, links
+    // the inputs as modules of one program, see Linker.
+    // Options are described in AssemblerOptions.
     public static void main(String[] args) {
 
-        // constructs a new symbolTable, asks user for path to ASM File Name.
-        SymbolTable table = new SymbolTable();
+        // options, anything else is a file to assemble.
+        List<String> inputs = new ArrayList<>();
+        AssemblerOptions options = new AssemblerOptions();
+        try {
+            options = AssemblerOptions.parse(args, inputs);
+        } catch (AssemblyException e) {
+            exitWithError(e.getMessage());
+        }
+
+        // server mode.
+        if (options.serveAddress != null) {
+            System.exit(AssemblyServer.run(options.serveAddress, options) ? 0 : 1);
+        }
+
+        // link mode, every input is a module of one program.
+        if (options.linkFile != null) {
+            System.exit(Linker.run(inputs, options) ? 0 : 1);
+        }
+
+        // streaming mode, standard in to standard out.
+        if (inputs.size() == 1 && inputs.get(0).equals(STANDARD_IN)) {
+            System.exit(StreamingAssembler.run(System.in, System.out, options) ? 0 : 1);
+        }
+
+        // watch mode.
+        if (options.watch) {
+            if (inputs.isEmpty()) {
+                inputs.add(".");
+            }
+            System.exit(WatchAssembler.run(inputs, options) ? 0 : 1);
+        }
+
+        // batch mode.
+        if (!inputs.isEmpty()) {
+            boolean allAssembled = BatchAssembler.run(inputs, options);
+            System.exit(allAssembled ? 0 : 1);
+        }
+
+        // asks user for path to ASM File Name.
         Scanner keyboard = new Scanner(System.in);
         String fileName;
 
@@ -31,302 +89,339 @@ public class Assembler {
         // start time
         long startTime = System.nanoTime();
 
-        // assemble
-        firstPass(fileName, table);
+        // assemble, writes hack file as fileName.hack (or the extension of the chosen format)
+        AssemblyStats stats = new AssemblyStats(options.stats, fileName);
+        try {
+            AssemblyResult result = assembleFile(fileName, options, stats);
+            if (result == null) {
+                System.out.println("Nothing has changed since the last assembly.");
+            } else {
+                for (String diagnostic : result.getDiagnostics()) {
+                    System.out.println("Warning: " + diagnostic);
+                }
+
+                // End of file, displaying some stats.
+                System.out.println("Total amount of lines in ASM file: " + result.size());
+                if (options.optimize || options.stripDeadCode) {
+                    System.out.println("Removed " + stats.getRemovedInstructions() + " instructions and "
+                                       + stats.getRemovedVariables() + " variables.");
+                }
+            }
+        } catch (AssemblyException e) {
+            exitWithError(e.getMessage());
+        }
 
         // time for successful assemble.
         System.out.println("Assembled in " + Long.toString((System.nanoTime() - startTime) / 1000000) + " MS");
 
-    }
+        // per phase report.
+        if (options.stats) {
+            report(stats.toJson(fileName), options);
+        }
 
-    // Method for the first pass of assembling machine code.
-    // Cleans the initial ASM file for easy reading on second pass.
-    private static void firstPass(String asmFileName, SymbolTable table) {
+    }
 
-        // Creates some tools to work with.
-        Parser parser = new Parser(asmFileName);
-        BufferedWriter writer = null;
-        String passOneText = "";
-        int currentVariableValue = 16;
-        int currentROMAddress = 0;
+    /*
+    Embeddable API, safe to call from many threads at once. Every call has its own Parser and symbolTable, the only
+    state shared between calls is the read only CInstructionMapper.
+     */
+
+    /**
+     * Assembles an ASM file.
+     * @param path the ASM file.
+     * @return the machine words, symbols and diagnostics.
+     * @throws AssemblyException if the file can't be read or assembled.
+     */
+    public static AssemblyResult assemble(Path path) {
+        return assemble(new Parser(path.toString()));
+    }
 
-        // creates temp file to write to.
+    /**
+     * Assembles ASM text read from a stream, the stream is read to its end but not closed.
+     * @param in the stream of ASM text.
+     * @return the machine words, symbols and diagnostics.
+     * @throws AssemblyException if the stream can't be read or assembled.
+     */
+    public static AssemblyResult assemble(InputStream in) {
         try {
-            File aFile = new File("temp.asm");
-            aFile.deleteOnExit();
-            writer = new BufferedWriter(new FileWriter(aFile));
+            return assemble(new Parser(ByteBuffer.wrap(in.readAllBytes())));
         } catch (IOException e) {
-            handleError(" BAD BINARY FILE NAME. COULD NOT RESOLVE. ");
+            throw new AssemblyException("Could not read ASM input.", e);
         }
+    }
 
-        // Begins the first pass of the ASM file.
-        while (parser.hasMoreCommands()) {
-            // parse line.
-            parser.advance();
-
-            // translate line.
-            String currentLine = "";
-
-            switch (parser.getCommandType()) {
-                case C_COMMAND:
-                    // sets currentLine to the clean line from parser.
-                    currentLine = parser.getCleanLine();
-                    break;
-                case A_COMMAND:
-                    // A instruction.
-                    // checks symbol to see if it's valid.
-                    String variable = parser.getSymbol();
-                    boolean isNum = true;
-
-                    // checks if this is a value ex:@256
-                    try {
-                        Integer.parseInt(variable);
-                    } catch (NumberFormatException e) {
-                        isNum = false;
-                    } catch (NullPointerException e) {
-                        isNum = false;
-                    }
-
-                    if (!table.validName(variable)) {
-                        if (!isNum) {
-                            System.out.println(variable);
-                            handleError("Bad variable name at line " + parser.getLineNumber());
-                        }
-                    }
-
-                    // valid name, must tell difference between @x and @LABEL. All caps check.
-                    boolean label = true;
-                    String upper = variable.toUpperCase();
-                    for (int i = 0; i < upper.length(); i++) {
-                        if (variable.charAt(i) != upper.charAt(i)) {
-                            label = false;
-                        }
-                    }
-
-                    // if isNum is true, than label must be false.
-                    if (isNum) {
-                        label = false;
-                    }
-
-                    // handles different case for variable being a label
-                    if (!label) {
-                        // variable, ex: @mark
-                        // check symbolTable -> true: get key value into string | false: add key value into table, string
-                        if (isNum) {
-                            currentLine = "@" + variable;
-                        } else if (table.contains(variable)) {
-                            currentLine = "@" + table.getAddress(variable);
-                        } else {
-                            table.addEntry(variable, Integer.toString(currentVariableValue));
-                            currentLine = "@" + table.getAddress(variable);
-                            currentVariableValue++;
-                        }
-                    } else if (!isNum){
-                        // label, ex: (MARK)
-                        // going to add invalid character for marking purposes as we don't know the line value yet.
-                        // this character will be a ?
-                        if (table.contains(variable)) {
-                            // Label value already exists, can just grab it now.
-                            currentLine = "@" + table.getAddress(variable);
-                        } else {
-                            // marking of unknown, will be checked later on.
-                            currentLine = "?@" + variable;
-                        }
-                    }
-
-                    break;
-                case L_COMMAND:
-                    // L instruction.
-
-                    // checks symbol to see if it's valid.
-                    String var = parser.getSymbol().toUpperCase();
-
-                    if (!table.validName(var)) {
-                        handleError("Bad variable name at line " + parser.getLineNumber());
-                    }
-
-                    // valid name, must be all caps for a label though.
-                    boolean isLabel = true;
-                    String lUpper = var.toUpperCase();
-                    for (int i = 0; i < lUpper.length(); i++) {
-                        if (var.charAt(i) != lUpper.charAt(i)) {
-                            isLabel = false;
-                        }
-                    }
-
-                    // if not all caps, throws an error and exits program.
-                    if (!isLabel) {
-                        handleError("Bad label name at line " + parser.getLineNumber());
-                    }
+    /**
+     * Assembles ASM text held in a buffer, from its position to its limit.
+     * @param source the ASM text.
+     * @return the machine words, symbols and diagnostics.
+     * @throws AssemblyException if the text can't be assembled.
+     */
+    public static AssemblyResult assemble(ByteBuffer source) {
+        return assemble(new Parser(source));
+    }
 
-                    // decides what to do with valid label name.
-                    if (table.contains(var)) {
-                        // already contains this label...? going to ignore...
-                    } else {
-                        // does not contain this label. place in table, ignore any new text.
-                        // value is based off of the current ROM line num, + 1 (always points to below label)
-                        table.addEntry(var, Integer.toString(currentROMAddress));
-                    }
+    /**
+     * Assembles ASM text.
+     * @param source the ASM text.
+     * @return the machine words, symbols and diagnostics.
+     * @throws AssemblyException if the text can't be assembled.
+     */
+    public static AssemblyResult assemble(CharSequence source) {
+        return assemble(new Parser(ByteBuffer.wrap(source.toString().getBytes(StandardCharsets.ISO_8859_1))));
+    }
 
-                    // current line is also a blank.
-                    currentLine = "";
+    // assembles everything the parser reads, with a new symbolTable.
+    private static AssemblyResult assemble(Parser parser) {
+        return assemble(parser, new AssemblyStats(false));
+    }
 
-                    break;
-                default:
-                    // NO_COMMAND
-                    // currentLine will be a blank.
-                    currentLine = "";
-                    break;
-            }
+    // assembles everything the parser reads, with a new symbolTable, measuring into stats.
+    private static AssemblyResult assemble(Parser parser, AssemblyStats stats) {
+        SymbolTable table = new SymbolTable();
+        List<String> diagnostics = new ArrayList<>();
+        InstructionList instructions = firstPass(parser, table, new CInstructionCache(MAPPER), stats, diagnostics);
+        stats.setSourceLines(parser.getLineNumber());
+        return new AssemblyResult(instructions, table.toMap(), diagnostics, parser.getLineNumber());
+    }
 
-            // writes to passOneText String.
-            // A into A into C into NO into L
-            // notice how NO and L are both blanks.
-            // format looks like: @23;@100;D=D+D;JMP;;;
-            // increments the current ROM address IF currentLine isn't a blank.
-            if (currentLine.length() != 0) {
-                // DEBUG
-                // System.out.println(currentROMAddress + ": " + currentLine);
-                passOneText = passOneText + "|" + currentLine;
-                currentROMAddress++;
-            }
-            // End of file.
+    // assembles the whole text as one chunk, removing dead code and redundant instructions before labels are
+    // resolved, as asked for by --strip-dead-code and --optimize. Programs that can't be moved get a warning.
+    private static AssemblyResult assembleOptimized(ByteBuffer input, AssemblerOptions options, AssemblyStats stats) {
+        stats.begin(AssemblyStats.Phase.FIRST_PASS);
+        ParallelAssembler.Chunk chunk = new ParallelAssembler.Chunk(input);
+        chunk.parse();
+        stats.end(AssemblyStats.Phase.FIRST_PASS);
+
+        stats.begin(AssemblyStats.Phase.OPTIMIZE);
+
+        String skipReason = null;
+        int removed = 0;
+        if (chunk.error == null && options.stripDeadCode) {
+            DeadCodeEliminator eliminator = new DeadCodeEliminator();
+            removed += eliminator.eliminate(chunk);
+            skipReason = eliminator.getSkipReason();
+            stats.setRemovedVariables(eliminator.getRemovedVariables());
+        }
+        if (chunk.error == null && options.optimize && skipReason == null) {
+            PeepholeOptimizer optimizer = new PeepholeOptimizer();
+            removed += optimizer.optimize(chunk);
+            skipReason = optimizer.getSkipReason();
         }
+        stats.end(AssemblyStats.Phase.OPTIMIZE);
 
+        AssemblyResult result = ParallelAssembler.link(Collections.singletonList(chunk), null, stats);
+        stats.setRemovedInstructions(removed);
+        if (skipReason == null) {
+            return result;
+        }
+        List<String> diagnostics = new ArrayList<>(result.getDiagnostics());
+        diagnostics.add(skipReason);
+        return new AssemblyResult(result.getInstructions(), result.getSymbols(), diagnostics,
+                                  result.getSourceLines());
+    }
 
-        // Now we need to finish translating the passOneText that has missing label markers, and write to a temp file
-        // for the second pass to translate.
-        // breaks down passOneText into tokens, each token is separated by a /
-        // filters out first |
-        passOneText = passOneText.substring(1);
-        StringTokenizer tokenizer = new StringTokenizer(passOneText, "|");
-        int amountTokens = tokenizer.countTokens();
-
-        // begins processing the tokens into the temp file.
-        for (int i = 0; i < amountTokens; i++) {
-            // checks token for marked symbol, ?, otherwise writes token directly to file.
-            String token = tokenizer.nextToken();
-            if (token.charAt(0) == '?') {
-                // does a loop up in the symbolTable for the address of this label.
-                token = "@" + table.getAddress(token.substring(2));
-                // write
-                try {
-                    writer.write(token + "\n");
-                    writer.flush();
-                } catch (IOException e) {
-                    handleError("Problem writing to temp file.");
-                }
-            } else {
-                // write
-                try {
-                    writer.write(token + "\n");
-                    writer.flush();
-                } catch (IOException e) {
-                    handleError("Problem writing to temp file.");
-                }
-            }
+    /**
+     * Assembles one ASM file with its own symbolTable, writing the output next to it. With --object the output is
+     * an unlinked module, with --strip-dead-code and --optimize the program is run through DeadCodeEliminator and
+     * PeepholeOptimizer first.
+     * @param fileName the path of the ASM file.
+     * @param options the output format, and how much of the work is done in parallel.
+     * @param stats filled with the time of each phase and the counters of the file.
+     * @return the assembled program, or null if --incremental found nothing had changed since the last run.
+     * @throws AssemblyException if the file can't be assembled or the output can't be written.
+     */
+    static AssemblyResult assembleFile(String fileName, AssemblerOptions options, AssemblyStats stats) {
+        if (options.object) {
+            return ObjectModule.assembleFile(fileName, stats);
+        }
+        if (options.incremental && !options.optimize && !options.stripDeadCode) {
+            return IncrementalAssembler.assembleFile(fileName, options, stats);
+        }
+        long allocated = AssemblyStats.allocatedBytes();
+        stats.begin(AssemblyStats.Phase.READ);
+        ByteBuffer input = Parser.open(fileName);
+        stats.end(AssemblyStats.Phase.READ);
+        stats.setBytesRead(input.remaining());
+
+        AssemblyResult result;
+        if (options.optimize || options.stripDeadCode) {
+            result = assembleOptimized(input, options, stats);
+        } else if (options.parallelParse) {
+            result = ParallelAssembler.assemble(input, stats);
+        } else {
+            result = assemble(new Parser(input), stats);
+        }
 
-            // DEBUG
-            // System.out.println(i + ": " + token);
+        stats.begin(AssemblyStats.Phase.OUTPUT);
+        String binaryFileName = outputFileName(fileName, options.format);
+        secondPass(result.getWords(), binaryFileName, options.format, options.parallelOutput);
+        stats.end(AssemblyStats.Phase.OUTPUT);
+        stats.setBytesWritten(new File(binaryFileName).length());
+        if (allocated >= 0) {
+            stats.setAllocatedBytes(AssemblyStats.allocatedBytes() - allocated);
         }
+        return result;
+    }
 
-        // first pass has completed, now passes temp file to second pass for
-        // translation into machine language. writes hack file as fileName.hack
+    /**
+     * Prints a stats report on standard out, or writes it to the file given with --stats=.
+     * @param json the report.
+     * @param options the options naming the report file.
+     */
+    static void report(String json, AssemblerOptions options) {
+        if (options.statsFile == null) {
+            System.out.println(json);
+            return;
+        }
         try {
-            writer.close();
+            Files.write(Paths.get(options.statsFile),
+                        (json + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
         } catch (IOException e) {
-            handleError("");
+            System.err.println("Could not write stats to " + options.statsFile);
         }
-        secondPass("temp.asm", table, (asmFileName.substring(0, asmFileName.indexOf('.')) + ".hack"));
+    }
 
+    /**
+     * Builds the name of the output file, the ASM file name with its extension replaced by the format's.
+     * @param fileName the path of the ASM file.
+     * @param format the output format.
+     * @return the path of the output file.
+     */
+    static String outputFileName(String fileName, OutputFormat format) {
+        return outputFileName(fileName, format.getExtension());
     }
 
-    // Method for the second pass of assembling machine code.
-    // Actually writes to a binary file.
-    private static void secondPass(String asmFileName, SymbolTable table, String binaryFileName) {
-        // Creates three object tools for parsing, translating, and writing.
-        Parser parser = new Parser(asmFileName);
-        CInstructionMapper mapper = new CInstructionMapper();
-        BufferedWriter writer = null;
-        try {
-            writer = new BufferedWriter(new FileWriter(binaryFileName));
-        } catch (IOException e) {
-            handleError(" BAD BINARY FILE NAME. COULD NOT RESOLVE. ");
-        }
+    /**
+     * Builds the name of an output file, the ASM file name with its extension replaced.
+     * @param fileName the path of the ASM file.
+     * @param extension the extension of the output, including the dot.
+     * @return the path of the output file.
+     */
+    static String outputFileName(String fileName, String extension) {
+        int dot = fileName.lastIndexOf('.');
+        int separator = Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\'));
+        String base = (dot > separator) ? fileName.substring(0, dot) : fileName;
+        return base + extension;
+    }
+
+    // Method for the first pass of assembling machine code.
+    // Reads the ASM file once, resolving symbols into addresses and encoding every instruction into the list for the
+    // second pass. References to labels further down are kept in a fix-up chain and patched when the label is defined.
+    // Symbols come interned from the parser and C instructions are encoded whole through the cache, so known
+    // instructions don't allocate. Anything suspicious that isn't an error is added to diagnostics.
+    // Every line is counted into stats, the pass is timed whole.
+    private static InstructionList firstPass(Parser parser, SymbolTable table, CInstructionCache cache,
+                                             AssemblyStats stats, List<String> diagnostics) {
 
-        // instanced variable.
-        String boolValue = "";
+        // Creates some tools to work with.
+        InstructionList instructions = new InstructionList();
+        SymbolResolver resolver = new SymbolResolver(table, diagnostics);
 
-        // Parses the ASM file.
+        // Begins the first pass of the ASM file.
+        stats.begin(AssemblyStats.Phase.FIRST_PASS);
         while (parser.hasMoreCommands()) {
             // parse line.
             parser.advance();
 
             // translate line.
-            switch (parser.getCommandType()) {
+            Command commandType = parser.getCommandType();
+            stats.count(commandType);
+            switch (commandType) {
                 case C_COMMAND:
-                    // OP CODE
-                    boolValue = "111";
-                    // A value + compValue
-                    boolValue = boolValue + mapper.comp(parser.getCompMnemonic());
-                    // destValue + jumpValue
-                    boolValue = boolValue + mapper.dest(parser.getDestMnemonic()) + mapper.jump(parser.getJumpMnemonic());
+                    // OP CODE | compValue | destValue | jumpValue
+                    int word = parser.encode(cache);
+                    if (word < 0) {
+                        handleError("Bad C instruction", parser.getLineNumber());
+                    }
+                    instructions.add(Command.C_COMMAND, word, null, parser.getLineNumber());
                     break;
                 case A_COMMAND:
-                    // A instruction is a simple binary translation.
-                    boolValue = decimalToBinary(Integer.valueOf(parser.getSymbol()));
+                    // A instruction.
+                    // one scan of the symbol tells if it's a value ex:@256, a valid name, and a label name.
+                    int symbolClass = parser.getSymbolClass();
+                    String variable = ((symbolClass & SymbolTable.NUMERIC) != 0) ? null : parser.getSymbol();
+
+                    // constants, symbols already in the table, and new variables ex: @mark resolve right away.
+                    int address = resolver.resolve(variable, symbolClass, parser.getLineNumber());
+                    if (address != SymbolResolver.UNRESOLVED) {
+                        instructions.add(Command.A_COMMAND, address, variable, parser.getLineNumber());
+                    } else {
+                        // label, ex: (MARK)
+                        // we don't know the line value yet, the instruction is linked onto the label's fix-up
+                        // chain until the label is defined.
+                        int previous = resolver.link(variable, parser.getLineNumber(), instructions.size());
+                        instructions.addUnresolved(variable, parser.getLineNumber(), previous);
+                    }
                     break;
                 case L_COMMAND:
+                    // L instruction.
+                    // value is based off of the current ROM line num, + 1 (always points to below label)
+                    // backpatches every earlier instruction waiting on this label.
+                    int currentROMAddress = instructions.size();
+                    int chain = resolver.define(parser.getSymbol(), parser.getLineNumber(), currentROMAddress);
+                    if (chain != InstructionList.NO_FIX_UP) {
+                        instructions.resolve(chain, CInstructionMapper.encodeAddress(currentROMAddress,
+                                                                                     parser.getLineNumber()));
+                    }
                     break;
-                default:        // NO_COMMAND
+                default:
+                    // NO_COMMAND
                     break;
             }
 
-            // Writing to Hack file.
-            if (boolValue.length() != 0) {
-                // DEBUG LINE
-                // System.out.println(parser.getCleanLine() + "  => " + boolValue);
-                try {
-                    writer.write(boolValue);
-                    writer.newLine();
-                    writer.flush();
-                } catch (IOException e) {
-                    handleError(" ISSUE WRITING TO HACK FILE. PLEASE CHECK NAME, FILE LOCATION, AND FILE NAME. ");
-                }
-            }
-
             // End of file.
         }
+        stats.end(AssemblyStats.Phase.FIRST_PASS);
 
-        // End of file, displaying some stats.
-        System.out.println("Total amount of lines in ASM file: " + parser.getLineNumber());
-
-    }
+        // anything left in the fix-up chains references a label that was never defined.
+        stats.begin(AssemblyStats.Phase.RESOLVE);
+        resolver.checkDefined();
+        stats.end(AssemblyStats.Phase.RESOLVE);
+        stats.countSymbols(table, resolver.getVariableCount());
+        stats.countCache(cache);
 
-    // Method for converting a number in a binary value.
-    private static String decimalToBinary(int number) {
-        // Creates an array of 100 number values. Overkill, though simple.
-        int numArray[] = new int[16];
+        // the file has been read once and every instruction is encoded, the instructions are passed
+        // to the second pass for writing.
+        return instructions;
 
-        // Creates a counter.
-        int counter = 0;
-        int x = number;
+    }
 
-        while (x > 0) {
-            numArray[counter] = x % 2;
-            x = x / 2;
-            counter++;
+    // Method for the second pass of assembling machine code.
+    // Actually writes to a binary file. HACK text goes through a buffered writer that only writes when its buffer
+    // fills up, or with one thread per core each writing its own range of the preallocated file.
+    // RAW and ROM images are written as packed 16 bit words.
+    static void secondPass(int[] words, String binaryFileName, OutputFormat format, boolean parallel) {
+        try {
+            if (format != OutputFormat.HACK) {
+                RomImage.write(Paths.get(binaryFileName), words, words.length, format);
+            } else if (parallel) {
+                ParallelHackWriter.write(binaryFileName, words, words.length,
+                                         Runtime.getRuntime().availableProcessors());
+            } else {
+                try (HackWriter writer = new HackWriter(binaryFileName)) {
+                    // Writes the instructions, the words are only rendered as text here.
+                    writer.write(words, 0, words.length);
+                }
+            }
+        } catch (IOException e) {
+            handleError(" ISSUE WRITING TO HACK FILE. PLEASE CHECK NAME, FILE LOCATION, AND FILE NAME. ");
         }
 
-        String value = "";
-        for (int j = 15; j >= 0; j--) {
-            value = value + (Integer.toString(numArray[j]));
-        }
-        return value;
     }
 
     // Method for handling an error, allows the program to place a custom error MSG tag for tracing.
+    // Errors found while assembling are thrown, so that one bad file doesn't stop a batch.
     private static void handleError(String msg) {
+        throw new AssemblyException(msg);
+    }
+
+    // Method for handling an error found on a line of the source.
+    private static void handleError(String msg, int lineNumber) {
+        throw new AssemblyException(msg, lineNumber);
+    }
+
+    // Method for reporting an error to the user of the interactive assembler, and exiting.
+    private static void exitWithError(String msg) {
         System.err.println("There was an error, exiting assembler. Please try again. CODE: " + msg);
         System.exit(0);
     }
@@ -0,0 +1,184 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times each stage of the assembler on a generated or given program: the parser, symbolTable lookups, C instruction
+ * encoding and full assembly. Every benchmark is warmed up, then run for a number of measured rounds, and the median
+ * round is reported as nanoseconds and bytes allocated per instruction, so the figures can be compared across
+ * changes. Allocation is measured on the benchmark thread, where the JVM supports it.
+ * The same stages run under JMH in the jmh source set, see build.gradle, this harness needs nothing but the JDK.
+ *
+ * Usage: java AssemblerBenchmark [label|variable|comment|all] [lines] [seed]
+ *        java AssemblerBenchmark file.asm
+ * By default every CorpusGenerator profile is run with DEFAULT_LINES lines.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblerBenchmark {
+
+    // constants.
+    private static final int DEFAULT_LINES = 1000000;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    // a benchmark, returns a value depending on all of its work so it can't be optimized away.
+    private interface Benchmark {
+        long run();
+    }
+
+    // instanced variables, the program and what was gathered from it.
+    private final byte[] source;
+    private final String[] symbols;
+    private final byte[][] cInstructions;
+    private final int instructions;
+
+    public static void main(String[] args) throws IOException {
+        String first = (args.length > 0) ? args[0] : "all";
+        if (first.endsWith(".asm")) {
+            new AssemblerBenchmark(Files.readAllBytes(Paths.get(first))).runAll(first);
+            return;
+        }
+        int lines = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_LINES;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : CorpusGenerator.DEFAULT_SEED;
+        for (CorpusGenerator.Profile profile : CorpusGenerator.Profile.values()) {
+            if (first.equalsIgnoreCase("all") || first.equalsIgnoreCase(profile.name())) {
+                byte[] source = CorpusGenerator.generate(profile, lines, seed);
+                new AssemblerBenchmark(source).runAll(profile.name().toLowerCase() + " " + lines + " lines");
+            }
+        }
+    }
+
+    /**
+     * Constructor, gathers the symbols and C instructions of the program for the lookup and encoding benchmarks.
+     * @param source the ASM program.
+     */
+    public AssemblerBenchmark(byte[] source) {
+        this.source = source;
+        List<String> symbolList = new ArrayList<>();
+        List<byte[]> cList = new ArrayList<>();
+        Parser parser = new Parser(ByteBuffer.wrap(source));
+        int count = 0;
+        while (parser.hasMoreCommands()) {
+            parser.advance();
+            switch (parser.getCommandType()) {
+                case A_COMMAND:
+                    count++;
+                    if ((parser.getSymbolClass() & SymbolTable.NUMERIC) == 0) {
+                        symbolList.add(parser.getSymbol());
+                    }
+                    break;
+                case C_COMMAND:
+                    count++;
+                    cList.add(parser.getCleanLine().getBytes(StandardCharsets.US_ASCII));
+                    break;
+                default:
+                    break;
+            }
+        }
+        symbols = symbolList.toArray(new String[0]);
+        cInstructions = cList.toArray(new byte[0][]);
+        instructions = count;
+    }
+
+    // runs every benchmark on the program.
+    private void runAll(String name) {
+        System.out.println(name + ": " + source.length / 1024 + " KB, " + instructions + " instructions, "
+                           + symbols.length + " symbolic A instructions, " + cInstructions.length
+                           + " C instructions");
+        measure("parser", instructions, this::parse);
+        measure("symbolTable get", symbols.length, this::lookUp);
+        measure("C encode, keys", cInstructions.length, this::encodeKeys);
+        measure("C encode, cache", cInstructions.length, this::encodeCached);
+        measure("assemble", instructions, this::assemble);
+        System.out.println();
+    }
+
+    // Parser.advance over the whole program.
+    private long parse() {
+        Parser parser = new Parser(ByteBuffer.wrap(source));
+        long commands = 0;
+        while (parser.hasMoreCommands()) {
+            parser.advance();
+            if (parser.getCommandType() != Command.NO_COMMAND) {
+                commands++;
+            }
+        }
+        return commands;
+    }
+
+    // fills a symbolTable the way the first pass does, then looks up every symbolic A instruction.
+    private long lookUp() {
+        SymbolTable table = new SymbolTable();
+        int next = 16;
+        for (String symbol : symbols) {
+            if (table.getOrInsert(symbol, next) == SymbolTable.NOT_FOUND) {
+                next++;
+            }
+        }
+        long sum = 0;
+        for (String symbol : symbols) {
+            sum += table.get(symbol);
+        }
+        return sum;
+    }
+
+    // splits every C instruction into mnemonics and encodes it.
+    private long encodeKeys() {
+        long sum = 0;
+        for (byte[] text : cInstructions) {
+            sum += Assembler.MAPPER.encode(text, 0, text.length);
+        }
+        return sum;
+    }
+
+    // encodes every C instruction whole, through a new cache.
+    private long encodeCached() {
+        CInstructionCache cache = new CInstructionCache(Assembler.MAPPER);
+        long sum = 0;
+        for (byte[] text : cInstructions) {
+            sum += cache.encode(text, text.length);
+        }
+        return sum;
+    }
+
+    // assembles the whole program through the embeddable API.
+    private long assemble() {
+        return Assembler.assemble(new ByteArrayInputStream(source)).size();
+    }
+
+    // warms up a benchmark, then prints the median of the measured rounds.
+    private static void measure(String name, int operations, Benchmark benchmark) {
+        long check = 0;
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            check += benchmark.run();
+        }
+        long[] times = new long[ROUNDS];
+        long[] allocations = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long allocated = AssemblyStats.allocatedBytes();
+            long start = System.nanoTime();
+            check += benchmark.run();
+            times[i] = System.nanoTime() - start;
+            allocations[i] = AssemblyStats.allocatedBytes() - allocated;
+        }
+        Arrays.sort(times);
+        Arrays.sort(allocations);
+        long time = times[ROUNDS / 2];
+        int count = Math.max(1, operations);
+        String allocation = (AssemblyStats.allocatedBytes() < 0) ? "n/a"
+                            : String.format("%.2f", allocations[ROUNDS / 2] / (double) count);
+        System.out.printf("  %-18s %8.2f ms %8.2f ns/op %9.2f M op/s %8s B/op%n", name, time / 1e6,
+                          time / (double) count, count / (time / 1e3), allocation);
+        if (check == Long.MIN_VALUE) {
+            System.out.println(check);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+import java.util.List;
+
+/**
+ * Holds the command line options of the assembler.
+ * --format=hack|raw|rom  picks the output format, see OutputFormat.
+ * --parallel-output      writes HACK output with one thread per core.
+ * --parallel-parse       parses and encodes each file with one thread per core, see ParallelAssembler.
+ * --incremental[=dir]    reuses the unchanged parts of the last assembly, cached in dir or .hackcache next to each
+ *                        file, see IncrementalAssembler.
+ * --watch                stays running and re-assembles the files as they change, see WatchAssembler.
+ * --serve=address        stays running and assembles programs sent to a local socket, tcp:port or unix:path, see
+ *                        AssemblyServer.
+ * --object               assembles each file into a relocatable .hobj module instead, see ObjectModule.
+ * --link=file            links the .hobj modules and ASM files given, in order, into one program, see Linker.
+ * --optimize             removes redundant instructions before labels are resolved, see PeepholeOptimizer.
+ * --strip-dead-code      removes code that can never run and packs the variables left, see DeadCodeEliminator.
+ *                        With either, whole files are always reassembled, --incremental and --parallel-parse are
+ *                        ignored.
+ * --stats[=file.json]    times every phase and reports it as JSON, on standard out or to a file, see AssemblyStats.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblerOptions {
+
+    // option names.
+    private static final String FORMAT = "--format=";
+    private static final String PARALLEL_OUTPUT = "--parallel-output";
+    private static final String PARALLEL_PARSE = "--parallel-parse";
+    private static final String STATS = "--stats";
+    private static final String INCREMENTAL = "--incremental";
+    private static final String WATCH = "--watch";
+    private static final String SERVE = "--serve=";
+    private static final String OBJECT = "--object";
+    private static final String LINK = "--link=";
+    private static final String OPTIMIZE = "--optimize";
+    private static final String STRIP_DEAD_CODE = "--strip-dead-code";
+
+    // instanced variables, the defaults are what the interactive assembler has always done.
+    OutputFormat format = OutputFormat.HACK;
+    boolean parallelOutput;
+    boolean parallelParse;
+    boolean stats;
+    String statsFile;
+    boolean incremental;
+    String cacheDirectory;
+    boolean watch;
+    String serveAddress;
+    boolean object;
+    String linkFile;
+    boolean optimize;
+    boolean stripDeadCode;
+
+    /**
+     * Reads the options out of the command line arguments.
+     * @param args the command line arguments.
+     * @param inputs filled with every argument that isn't an option.
+     * @return the options.
+     * @throws AssemblyException if an option is unknown or has a bad value.
+     */
+    public static AssemblerOptions parse(String[] args, List<String> inputs) {
+        AssemblerOptions options = new AssemblerOptions();
+        for (String arg : args) {
+            if (arg.startsWith(FORMAT)) {
+                options.format = parseFormat(arg.substring(FORMAT.length()));
+            } else if (arg.equals(PARALLEL_OUTPUT)) {
+                options.parallelOutput = true;
+            } else if (arg.equals(PARALLEL_PARSE)) {
+                options.parallelParse = true;
+            } else if (arg.equals(INCREMENTAL)) {
+                options.incremental = true;
+            } else if (arg.startsWith(INCREMENTAL + "=")) {
+                options.incremental = true;
+                options.cacheDirectory = arg.substring(INCREMENTAL.length() + 1);
+            } else if (arg.equals(WATCH)) {
+                options.watch = true;
+            } else if (arg.equals(OBJECT)) {
+                options.object = true;
+            } else if (arg.equals(OPTIMIZE)) {
+                options.optimize = true;
+            } else if (arg.equals(STRIP_DEAD_CODE)) {
+                options.stripDeadCode = true;
+            } else if (arg.startsWith(LINK)) {
+                options.linkFile = arg.substring(LINK.length());
+            } else if (arg.startsWith(SERVE)) {
+                options.serveAddress = arg.substring(SERVE.length());
+            } else if (arg.equals(STATS)) {
+                options.stats = true;
+            } else if (arg.startsWith(STATS + "=")) {
+                options.stats = true;
+                options.statsFile = arg.substring(STATS.length() + 1);
+            } else if (arg.startsWith("--")) {
+                throw new AssemblyException("Unknown option " + arg);
+            } else {
+                inputs.add(arg);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * @param name the name of an output format, in any case.
+     * @return the output format.
+     * @throws AssemblyException if there is no such format.
+     */
+    static OutputFormat parseFormat(String name) {
+        try {
+            return OutputFormat.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new AssemblyException("Unknown output format " + name);
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small client for AssemblyServer, so scripts can assemble without starting the assembler's JVM for every file.
+ * Every file is sent over one connection and its output is written next to it, named as the assembler names it.
+ * With no files, or the file -, ASM text is read from standard in and the output written to standard out.
+ * Diagnostics are printed as warnings on standard error.
+ *
+ * Usage: java AssemblyClient tcp:port|unix:path [--format=hack|raw|rom] [file.asm ...]
+ * Exits with 1 if any file couldn't be assembled.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblyClient {
+
+    // constants.
+    private static final String FORMAT = "--format=";
+    private static final String STANDARD_IN = "-";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // instanced variables, the two directions of the connection.
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * @param channel a connection to the server.
+     */
+    public AssemblyClient(SocketChannel channel) {
+        this.in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java AssemblyClient tcp:port|unix:path [--format=hack|raw|rom] [file.asm ...]");
+            System.exit(1);
+        }
+        OutputFormat format = OutputFormat.HACK;
+        List<String> files = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].startsWith(FORMAT)) {
+                    format = AssemblerOptions.parseFormat(args[i].substring(FORMAT.length()));
+                } else {
+                    files.add(args[i]);
+                }
+            }
+        } catch (AssemblyException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (files.isEmpty()) {
+            files.add(STANDARD_IN);
+        }
+
+        boolean allAssembled = true;
+        try (SocketChannel channel = AssemblyServer.connect(AssemblyServer.parseAddress(args[0]))) {
+            AssemblyClient client = new AssemblyClient(channel);
+            for (String file : files) {
+                allAssembled &= client.assembleFile(file, format);
+            }
+        } catch (IOException | AssemblyException e) {
+            System.err.println("Error: lost the server at " + args[0] + ": " + e.getMessage());
+            allAssembled = false;
+        }
+        System.exit(allAssembled ? 0 : 1);
+    }
+
+    // assembles one file, or standard in, printing any error.
+    private boolean assembleFile(String file, OutputFormat format) throws IOException {
+        boolean standardIn = file.equals(STANDARD_IN);
+        byte[] source;
+        try {
+            source = standardIn ? System.in.readAllBytes() : Files.readAllBytes(Paths.get(file));
+        } catch (IOException e) {
+            System.err.println("Error: could not read " + file);
+            return false;
+        }
+        try {
+            byte[] output = assemble(source, format, System.err);
+            if (standardIn) {
+                System.out.write(output);
+                System.out.flush();
+            } else {
+                Files.write(Paths.get(Assembler.outputFileName(file, format)), output);
+            }
+            return true;
+        } catch (AssemblyException e) {
+            System.err.println("Error: " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Sends a program to the server and waits for its output.
+     * @param source the ASM text.
+     * @param format the output format.
+     * @param warnings where diagnostics are printed, one line each.
+     * @return the output, byte for byte what the assembler would write to a file.
+     * @throws AssemblyException if the server couldn't assemble the program.
+     * @throws IOException if the connection fails.
+     */
+    public byte[] assemble(byte[] source, OutputFormat format, PrintStream warnings) throws IOException {
+        AssemblyServer.writeLine(out, AssemblyServer.ASSEMBLE + " " + format.name().toLowerCase() + " "
+                                      + source.length);
+        out.write(source);
+        out.flush();
+
+        String header = AssemblyServer.readLine(in);
+        if (header == null) {
+            throw new EOFException("Server closed the connection.");
+        }
+        if (header.startsWith(AssemblyServer.ERROR)) {
+            throw new AssemblyException(header.substring(AssemblyServer.ERROR.length()).trim());
+        }
+        String[] fields = header.split(" ");
+        if (fields.length != 4 || !fields[0].equals(AssemblyServer.OK)) {
+            throw new IOException("Unexpected response " + header);
+        }
+        int length = Integer.parseInt(fields[2]);
+        int diagnostics = Integer.parseInt(fields[3]);
+        for (int i = 0; i < diagnostics; i++) {
+            String diagnostic = AssemblyServer.readLine(in);
+            if (diagnostic == null) {
+                throw new EOFException("Server closed the connection.");
+            }
+            warnings.println("Warning: " + diagnostic);
+        }
+        byte[] output = in.readNBytes(length);
+        if (output.length < length) {
+            throw new EOFException("Server closed the connection.");
+        }
+        return output;
+    }
+
+}
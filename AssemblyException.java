@@ -0,0 +1,57 @@
+/**
+ * Thrown when a file can't be assembled, carries a message describing the error for tracing.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // the source line the error was found on, 0 if it isn't tied to a line, and the message without it.
+    private final int lineNumber;
+    private final String reason;
+
+    /**
+     * @param msg the error message.
+     */
+    public AssemblyException(String msg) {
+        super(msg);
+        this.lineNumber = 0;
+        this.reason = msg;
+    }
+
+    /**
+     * @param msg the error message, the line number is added to the end of it.
+     * @param lineNumber the source line the error was found on.
+     */
+    public AssemblyException(String msg, int lineNumber) {
+        super(msg + " at line " + lineNumber);
+        this.lineNumber = lineNumber;
+        this.reason = msg;
+    }
+
+    /**
+     * @param msg the error message.
+     * @param cause the exception that caused the error.
+     */
+    public AssemblyException(String msg, Throwable cause) {
+        super(msg, cause);
+        this.lineNumber = 0;
+        this.reason = msg;
+    }
+
+    /**
+     * @return the source line the error was found on, 0 if it isn't tied to a line.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @return the error message, without the line number.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+}
@@ -0,0 +1,110 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds everything produced by assembling one program: the machine words, the symbols they were resolved with, and
+ * any diagnostics (warnings) found along the way. Errors aren't diagnostics, they are thrown as AssemblyException.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblyResult {
+
+    // instanced variables, the symbols of a result built from words are copied out of their table when first asked for.
+    private final InstructionList instructions;
+    private final int[] words;
+    private final SymbolTable table;
+    private Map<String, Integer> symbols;
+    private final List<String> diagnostics;
+    private final int sourceLines;
+
+    /**
+     * @param instructions the instructions produced by the first pass.
+     * @param symbols every label, variable and predefined symbol with its address.
+     * @param diagnostics the warnings found while assembling.
+     * @param sourceLines the number of lines read from the source.
+     */
+    AssemblyResult(InstructionList instructions, Map<String, Integer> symbols, List<String> diagnostics,
+                   int sourceLines) {
+        this.instructions = instructions;
+        this.words = instructions.toWordArray();
+        this.table = null;
+        this.symbols = Collections.unmodifiableMap(symbols);
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.sourceLines = sourceLines;
+    }
+
+    /**
+     * For a program put together from machine words alone, such as from the regions IncrementalAssembler kept.
+     * @param words the machine words, owned by the result from now on.
+     * @param table every label, variable and predefined symbol with its address, only copied into a Map once asked
+     *              for, as most callers never ask.
+     * @param diagnostics the warnings found while assembling.
+     * @param sourceLines the number of lines read from the source.
+     */
+    AssemblyResult(int[] words, SymbolTable table, List<String> diagnostics, int sourceLines) {
+        this.instructions = null;
+        this.words = words;
+        this.table = table;
+        this.diagnostics = Collections.unmodifiableList(diagnostics);
+        this.sourceLines = sourceLines;
+    }
+
+    /**
+     * The array is owned by the result and is not copied, callers must not modify it.
+     * @return the 16 bit machine words, one per ROM address.
+     */
+    public int[] getWords() {
+        return words;
+    }
+
+    /**
+     * @return the words as shorts, one per ROM address.
+     */
+    public short[] toShortArray() {
+        short[] shorts = new short[words.length];
+        for (int i = 0; i < words.length; i++) {
+            shorts[i] = (short) words[i];
+        }
+        return shorts;
+    }
+
+    /**
+     * @return every symbol and the address it resolved to.
+     */
+    public Map<String, Integer> getSymbols() {
+        if (symbols == null) {
+            symbols = Collections.unmodifiableMap(table.toMap());
+        }
+        return symbols;
+    }
+
+    /**
+     * @return the warnings found while assembling.
+     */
+    public List<String> getDiagnostics() {
+        return diagnostics;
+    }
+
+    /**
+     * @return the number of instructions, or ROM words.
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * @return the number of lines read from the source.
+     */
+    public int getSourceLines() {
+        return sourceLines;
+    }
+
+    /**
+     * @return the instructions, with the symbol and source line of each one, or null if built from words alone.
+     */
+    InstructionList getInstructions() {
+        return instructions;
+    }
+
+}
@@ -0,0 +1,288 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Handles staying resident and assembling programs sent over a local socket, so short jobs don't pay for starting a
+ * JVM and warming up the assembler every time. Listens on a TCP port of the loopback address, or on a Unix domain
+ * socket. Every connection is served on its own thread, a virtual thread where the JVM has them, and every program
+ * is assembled with its own Parser and symbolTable through the embeddable API, so only the read only
+ * CInstructionMapper is shared between requests.
+ *
+ * The protocol is ASCII header lines followed by raw bytes, any number of requests per connection:
+ *   request:  ASSEMBLE hack|raw|rom length\n, then length bytes of ASM text.
+ *   response: OK words length diagnostics\n, then one line per diagnostic, then length bytes of output in the format
+ *             asked for, or ERROR message\n if the program couldn't be assembled.
+ * The connection is closed once the client has sent all its requests and closed its side. See AssemblyClient.
+ *
+ * Addresses: tcp:port, tcp:host:port, unix:path, or just a port.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblyServer {
+
+    // constants, the protocol words and the limits of a request.
+    static final String ASSEMBLE = "ASSEMBLE";
+    static final String OK = "OK";
+    static final String ERROR = "ERROR";
+    static final int MAX_LINE = 4096;
+    private static final int MAX_REQUEST_BYTES = 1 << 30;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TCP = "tcp:";
+    private static final String UNIX = "unix:";
+
+    // instanced variables.
+    private final ServerSocketChannel server;
+    private final AssemblerOptions options;
+    private final ExecutorService connections = newThreadPerTaskExecutor();
+
+    private AssemblyServer(ServerSocketChannel server, AssemblerOptions options) {
+        this.server = server;
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: java AssemblyServer tcp:port|unix:path");
+            System.exit(1);
+        }
+        System.exit(run(args[0], new AssemblerOptions()) ? 0 : 1);
+    }
+
+    /**
+     * Listens on an address and serves every connection until the process is stopped.
+     * @param address tcp:port, tcp:host:port, unix:path, or just a port.
+     * @param options with --parallel-parse, each program is parsed with one thread per core.
+     * @return false if the server couldn't be started, otherwise only returns once the socket is closed.
+     */
+    public static boolean run(String address, AssemblerOptions options) {
+        SocketAddress socketAddress;
+        ServerSocketChannel server;
+        try {
+            socketAddress = parseAddress(address);
+            server = open(socketAddress);
+        } catch (IOException | AssemblyException e) {
+            System.err.println("Could not listen on " + address + ": " + e.getMessage());
+            return false;
+        }
+        if (socketAddress instanceof UnixDomainSocketAddress) {
+            Path socketFile = ((UnixDomainSocketAddress) socketAddress).getPath();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteSocketFile(socketFile)));
+        }
+
+        System.out.println("Listening on " + address + ", press Ctrl+C to stop.");
+        new AssemblyServer(server, options).accept();
+        return true;
+    }
+
+    /**
+     * Reads an address.
+     * @param address tcp:port, tcp:host:port, unix:path, or just a port.
+     * @return the socket address, TCP addresses are on the loopback address unless a host is given.
+     * @throws AssemblyException if the address can't be read.
+     */
+    static SocketAddress parseAddress(String address) {
+        if (address.startsWith(UNIX)) {
+            return UnixDomainSocketAddress.of(address.substring(UNIX.length()));
+        }
+        String hostAndPort = address.startsWith(TCP) ? address.substring(TCP.length()) : address;
+        int colon = hostAndPort.lastIndexOf(':');
+        try {
+            int port = Integer.parseInt(hostAndPort.substring(colon + 1));
+            if (colon < 0) {
+                return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+            }
+            return new InetSocketAddress(hostAndPort.substring(0, colon), port);
+        } catch (IllegalArgumentException e) {
+            throw new AssemblyException("Bad address " + address + ", expected tcp:port or unix:path");
+        }
+    }
+
+    /**
+     * Connects to a server.
+     * @param address the address of the server.
+     * @return the connected channel.
+     * @throws IOException if the server can't be reached.
+     */
+    static SocketChannel connect(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(address);
+            return channel;
+        }
+        return SocketChannel.open(address);
+    }
+
+    /**
+     * Reads one ASCII header line, without its newline.
+     * @param in the stream to read from.
+     * @return the line, or null at the end of the stream before any byte of a line.
+     * @throws IOException if the line can't be read or is longer than MAX_LINE.
+     */
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c = in.read();
+        if (c < 0) {
+            return null;
+        }
+        while (c != '\n') {
+            if (c < 0) {
+                throw new EOFException("Connection closed in the middle of a line.");
+            }
+            if (line.length() == MAX_LINE) {
+                throw new IOException("Line longer than " + MAX_LINE + " bytes.");
+            }
+            line.append((char) c);
+            c = in.read();
+        }
+        return line.toString();
+    }
+
+    /**
+     * Writes one ASCII header line, any newline in the text is replaced so it stays one line.
+     * @param out the stream to write to.
+     * @param line the line, without its newline.
+     * @throws IOException if the line can't be written.
+     */
+    static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.replace('\n', ' ').replace('\r', ' ').getBytes(StandardCharsets.US_ASCII));
+        out.write('\n');
+    }
+
+    /**
+     * Renders assembled words in an output format, byte for byte what would be written to a file.
+     * @param words the machine words.
+     * @param format the output format.
+     * @return the output.
+     */
+    static byte[] render(int[] words, OutputFormat format) {
+        if (format == OutputFormat.HACK) {
+            return HackWriter.toBytes(words, 0, words.length);
+        }
+        return RomImage.toBytes(words, words.length, format);
+    }
+
+    // accepts connections until the socket is closed.
+    private void accept() {
+        try {
+            while (true) {
+                SocketChannel connection = server.accept();
+                connections.execute(() -> serve(connection));
+            }
+        } catch (IOException e) {
+            System.err.println("Stopped listening: " + e.getMessage());
+        } finally {
+            connections.shutdown();
+        }
+    }
+
+    // answers the requests of one connection until the client closes its side.
+    private void serve(SocketChannel connection) {
+        try (SocketChannel channel = connection;
+             InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE)) {
+            String header;
+            while ((header = readLine(in)) != null) {
+                answer(header, in, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("Connection dropped: " + e.getMessage());
+        }
+    }
+
+    // answers one request, a bad header ends the connection since the rest of the stream can't be trusted.
+    private void answer(String header, InputStream in, OutputStream out) throws IOException {
+        String[] fields = header.trim().split(" +");
+        OutputFormat format;
+        int length;
+        try {
+            if (fields.length != 3 || !fields[0].equals(ASSEMBLE)) {
+                throw new AssemblyException("Expected " + ASSEMBLE + " format length");
+            }
+            format = AssemblerOptions.parseFormat(fields[1]);
+            length = Integer.parseInt(fields[2]);
+            if (length < 0 || length > MAX_REQUEST_BYTES) {
+                throw new AssemblyException("Request length must be 0 - " + MAX_REQUEST_BYTES);
+            }
+        } catch (AssemblyException | NumberFormatException e) {
+            writeLine(out, ERROR + " Bad request: " + e.getMessage());
+            out.flush();
+            throw new IOException("Bad request " + header);
+        }
+
+        byte[] source = in.readNBytes(length);
+        if (source.length < length) {
+            throw new EOFException("Connection closed in the middle of a request.");
+        }
+
+        AssemblyResult result;
+        try {
+            ByteBuffer input = ByteBuffer.wrap(source);
+            result = options.parallelParse ? ParallelAssembler.assemble(input) : Assembler.assemble(input);
+        } catch (AssemblyException e) {
+            writeLine(out, ERROR + " " + e.getMessage());
+            return;
+        }
+        byte[] output = render(result.getWords(), format);
+        writeLine(out, OK + " " + result.size() + " " + output.length + " " + result.getDiagnostics().size());
+        for (String diagnostic : result.getDiagnostics()) {
+            writeLine(out, diagnostic);
+        }
+        out.write(output);
+    }
+
+    // opens a listening socket of the address's kind, replacing a Unix socket file left by an earlier server.
+    // Regular files and directories are never replaced.
+    private static ServerSocketChannel open(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            Path socketFile = ((UnixDomainSocketAddress) address).getPath();
+            if (!Files.isRegularFile(socketFile) && !Files.isDirectory(socketFile)) {
+                deleteSocketFile(socketFile);
+            }
+            return ServerSocketChannel.open(StandardProtocolFamily.UNIX).bind(address);
+        }
+        return ServerSocketChannel.open().bind(address);
+    }
+
+    private static void deleteSocketFile(Path socketFile) {
+        try {
+            Files.deleteIfExists(socketFile);
+        } catch (IOException e) {
+            System.err.println("Could not remove socket file " + socketFile);
+        }
+    }
+
+    // a thread per connection, virtual threads on JVMs that have them and pooled platform threads otherwise.
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "assembly-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+}
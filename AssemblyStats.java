@@ -0,0 +1,315 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Holds the measurements of assembling one program: the time spent in each phase and counters of what was read,
+ * found and written. Each phase is timed whole, from begin() to end(), never line by line, so timing costs two
+ * clock reads per phase. Timing is only done when asked for, counters are always kept.
+ *
+ * The report is printed as a JSON object by toJson(). Every phase is also a JFR event spanning the phase itself,
+ * committed at end() while a flight recording is running, whether or not timing is on.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class AssemblyStats {
+
+    /**
+     * The phases of assembling a program.
+     * READ: mapping or reading the input. FIRST_PASS: lexing, classifying and encoding every line, with the symbols
+     * resolved on the way. OPTIMIZE: the optional passes that remove instructions. RESOLVE: linking labels and
+     * variables, and the fix-ups left. OUTPUT: writing the machine code.
+     */
+    public enum Phase {
+        READ, FIRST_PASS, OPTIMIZE, RESOLVE, OUTPUT
+    }
+
+    // instanced variables, the start and JFR event of each phase running.
+    private final boolean timing;
+    private final String file;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] phaseStarts = new long[Phase.values().length];
+    private final PhaseEvent[] events = new PhaseEvent[Phase.values().length];
+    private final long[] commandCounts = new long[Command.values().length];
+    private long labels;
+    private long variables;
+    private long symbols;
+    private long sourceLines;
+    private long bytesRead;
+    private long bytesWritten;
+    private long allocatedBytes;
+    private long cacheHits;
+    private long cacheMisses;
+    private long regions;
+    private long reusedRegions;
+    private long removedInstructions;
+    private long removedVariables;
+
+    /**
+     * @param timing true to time each phase, counters are kept either way.
+     */
+    public AssemblyStats(boolean timing) {
+        this(timing, null);
+    }
+
+    /**
+     * @param timing true to time each phase, counters are kept either way.
+     * @param file the name of the program, given to the JFR events, or null.
+     */
+    public AssemblyStats(boolean timing, String file) {
+        this.timing = timing;
+        this.file = file;
+    }
+
+    /**
+     * Starts a phase, and its JFR event if a recording wants it. The event class is only touched once Flight
+     * Recorder is running, loading it registers the event with JFR, which takes longer than reading a large file.
+     * @param phase the phase about to run.
+     */
+    public void begin(Phase phase) {
+        if (FlightRecorder.isInitialized()) {
+            PhaseEvent event = new PhaseEvent();
+            if (event.isEnabled()) {
+                event.begin();
+                events[phase.ordinal()] = event;
+            }
+        }
+        if (timing) {
+            phaseStarts[phase.ordinal()] = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends a phase started with begin(), adding its time and committing its JFR event.
+     * @param phase the phase that just ran.
+     */
+    public void end(Phase phase) {
+        if (timing) {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStarts[phase.ordinal()];
+        }
+        PhaseEvent event = events[phase.ordinal()];
+        if (event != null) {
+            events[phase.ordinal()] = null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.file = file;
+                event.phase = phase.name();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Counts one source line.
+     * @param command the kind of command on the line.
+     */
+    public void count(Command command) {
+        commandCounts[command.ordinal()]++;
+    }
+
+    /**
+     * Adds the counters and times of another program, or of a part of one.
+     * @param other the stats to add.
+     */
+    public void add(AssemblyStats other) {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] += other.phaseNanos[i];
+        }
+        for (int i = 0; i < commandCounts.length; i++) {
+            commandCounts[i] += other.commandCounts[i];
+        }
+        labels += other.labels;
+        variables += other.variables;
+        symbols += other.symbols;
+        sourceLines += other.sourceLines;
+        bytesRead += other.bytesRead;
+        bytesWritten += other.bytesWritten;
+        allocatedBytes += other.allocatedBytes;
+        cacheHits += other.cacheHits;
+        cacheMisses += other.cacheMisses;
+        regions += other.regions;
+        reusedRegions += other.reusedRegions;
+        removedInstructions += other.removedInstructions;
+        removedVariables += other.removedVariables;
+    }
+
+    /**
+     * Records the symbols of the finished program.
+     * @param table the symbolTable of the program.
+     * @param variables the number of variables allocated in RAM.
+     */
+    public void countSymbols(SymbolTable table, int variables) {
+        this.symbols = table.size();
+        this.variables = variables;
+        this.labels = table.size() - variables;
+    }
+
+    /**
+     * Adds the hits and misses of a C instruction cache.
+     * @param cache the cache.
+     */
+    public void countCache(CInstructionCache cache) {
+        cacheHits += cache.getHits();
+        cacheMisses += cache.getMisses();
+    }
+
+    /**
+     * Builds the report as a JSON object, times in nanoseconds.
+     * @param file the name of the program, or null.
+     * @return the JSON text, on one line.
+     */
+    public String toJson(String file) {
+        StringBuilder json = new StringBuilder("{");
+        if (file != null) {
+            json.append("\"file\":\"").append(escape(file)).append("\",");
+        }
+        json.append("\"phases\":{");
+        long total = 0;
+        for (Phase phase : Phase.values()) {
+            json.append('"').append(phase.name().toLowerCase()).append("\":").append(phaseNanos[phase.ordinal()])
+                .append(',');
+            total += phaseNanos[phase.ordinal()];
+        }
+        json.append("\"total\":").append(total).append("},\"commands\":{");
+        for (Command command : Command.values()) {
+            json.append('"').append(command.name()).append("\":").append(commandCounts[command.ordinal()])
+                .append(command.ordinal() < commandCounts.length - 1 ? "," : "");
+        }
+        json.append("},\"sourceLines\":").append(sourceLines)
+            .append(",\"labels\":").append(labels)
+            .append(",\"variables\":").append(variables)
+            .append(",\"symbolTableSize\":").append(symbols)
+            .append(",\"bytesRead\":").append(bytesRead)
+            .append(",\"bytesWritten\":").append(bytesWritten)
+            .append(",\"allocatedBytes\":").append(allocatedBytes)
+            .append(",\"cacheHits\":").append(cacheHits)
+            .append(",\"cacheMisses\":").append(cacheMisses)
+            .append(",\"regions\":").append(regions)
+            .append(",\"reusedRegions\":").append(reusedRegions)
+            .append(",\"removedInstructions\":").append(removedInstructions)
+            .append(",\"removedVariables\":").append(removedVariables)
+            .append('}');
+        return json.toString();
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, -1 if the JVM can't tell.
+     */
+    public static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    // escapes a String for a JSON string literal.
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < ' ') {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /*
+    getters and setters
+     */
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getCommandCount(Command command) {
+        return commandCounts[command.ordinal()];
+    }
+
+    public long getLabels() {
+        return labels;
+    }
+
+    public long getVariables() {
+        return variables;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    public long getRemovedInstructions() {
+        return removedInstructions;
+    }
+
+    public long getRemovedVariables() {
+        return removedVariables;
+    }
+
+    public boolean isTiming() {
+        return timing;
+    }
+
+    public void setSourceLines(long sourceLines) {
+        this.sourceLines = sourceLines;
+    }
+
+    public void setBytesRead(long bytesRead) {
+        this.bytesRead = bytesRead;
+    }
+
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    public void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public void setRemovedInstructions(long removedInstructions) {
+        this.removedInstructions = removedInstructions;
+    }
+
+    public void setRemovedVariables(long removedVariables) {
+        this.removedVariables = removedVariables;
+    }
+
+    public void setReusedRegions(long reusedRegions, long regions) {
+        this.reusedRegions = reusedRegions;
+        this.regions = regions;
+    }
+
+    // one phase of assembling a program, its duration is the phase itself.
+    @Name("hack.AssemblyPhase")
+    @Label("Assembly Phase")
+    @Category("Hack Assembler")
+    @Description("One phase of assembling a program")
+    static class PhaseEvent extends Event {
+        @Label("File")
+        String file;
+
+        @Label("Phase")
+        String phase;
+    }
+
+}
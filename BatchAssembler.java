@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Handles assembling many ASM files without any user interaction.
+ * Arguments may be files, directories (every .asm file below them) or globs such as "progs/**.asm". The files are
+ * assembled concurrently on a pool with one worker per core, each file with its own symbolTable and its output written
+ * next to it. Once every file is done a summary of per file results and total throughput is printed, followed by a
+ * JSON array of every assembled file's stats with --stats.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class BatchAssembler {
+
+    // constants.
+    private static final String ASM_EXTENSION = ".asm";
+    private static final String GLOB_CHARS = "*?[{";
+
+    /**
+     * Assembles every file named by the arguments and prints a summary.
+     * @param arguments files, directories and globs.
+     * @param options the options every file is assembled with.
+     * @return true if every file was assembled.
+     */
+    public static boolean run(List<String> arguments, AssemblerOptions options) {
+        List<Path> files;
+        try {
+            files = expand(arguments);
+        } catch (IOException e) {
+            System.err.println("Could not list input files: " + e.getMessage());
+            return false;
+        }
+        if (files.isEmpty()) {
+            System.err.println("No ASM files found.");
+            return false;
+        }
+
+        // assembles every file on the pool.
+        long startTime = System.nanoTime();
+        int workers = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Result>> jobs = new ArrayList<>();
+        for (Path file : files) {
+            jobs.add(pool.submit(() -> assemble(file, options)));
+        }
+        pool.shutdown();
+
+        // gathers the results in the order the files were given.
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                results.add(jobs.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new Result(files.get(i), 0, 0, 0, "interrupted", null));
+            } catch (ExecutionException e) {
+                results.add(new Result(files.get(i), 0, 0, 0, String.valueOf(e.getCause()), null));
+            }
+        }
+        long elapsed = System.nanoTime() - startTime;
+
+        boolean allAssembled = printSummary(results, elapsed, workers);
+        if (options.stats) {
+            Assembler.report(statsJson(results), options);
+        }
+        return allAssembled;
+    }
+
+    // assembles a single file, any error is kept in the result.
+    private static Result assemble(Path file, AssemblerOptions options) {
+        long start = System.nanoTime();
+        AssemblyStats stats = new AssemblyStats(options.stats, file.toString());
+        try {
+            long bytes = Files.size(file);
+            AssemblyResult result = Assembler.assembleFile(file.toString(), options, stats);
+            if (result == null) {
+                // --incremental found nothing had changed.
+                return new Result(file, -1, 0, System.nanoTime() - start, null, stats);
+            }
+            return new Result(file, result.size(), bytes, System.nanoTime() - start, null, stats);
+        } catch (AssemblyException e) {
+            return new Result(file, 0, 0, System.nanoTime() - start, e.getMessage(), null);
+        } catch (IOException e) {
+            return new Result(file, 0, 0, System.nanoTime() - start, "File not found, or could not be accessed.",
+                              null);
+        }
+    }
+
+    // builds a JSON array of the stats of every assembled file.
+    private static String statsJson(List<Result> results) {
+        StringBuilder json = new StringBuilder("[");
+        for (Result result : results) {
+            if (result.stats != null) {
+                json.append(json.length() > 1 ? ",\n" : "\n").append(result.stats.toJson(result.file.toString()));
+            }
+        }
+        return json.append("\n]").toString();
+    }
+
+    // prints one line per file and the totals, returns true if no file failed.
+    private static boolean printSummary(List<Result> results, long elapsed, int workers) {
+        int failed = 0;
+        long instructions = 0;
+        long bytes = 0;
+        for (Result result : results) {
+            if (result.error == null && result.instructions < 0) {
+                System.out.printf("SKIP   %s: unchanged%n", result.file);
+            } else if (result.error == null) {
+                instructions += result.instructions;
+                bytes += result.bytes;
+                System.out.printf("OK     %s: %d instructions in %d MS%n", result.file, result.instructions,
+                                  result.nanos / 1000000);
+            } else {
+                failed++;
+                System.out.printf("FAILED %s: %s%n", result.file, result.error);
+            }
+        }
+
+        double seconds = Math.max(elapsed, 1) / 1e9;
+        System.out.printf("Assembled %d of %d files on %d workers in %d MS: %d instructions, %.0f instructions/s, "
+                          + "%.1f MB/s%n", results.size() - failed, results.size(), workers, elapsed / 1000000,
+                          instructions, instructions / seconds, bytes / (1024.0 * 1024.0) / seconds);
+        return failed == 0;
+    }
+
+    /**
+     * Expands files, directories and globs into the list of ASM files to assemble, without duplicates.
+     * @param arguments files, directories and globs.
+     * @return the ASM files, in the order they were named.
+     * @throws IOException if a directory couldn't be listed.
+     */
+    static List<Path> expand(List<String> arguments) throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+        for (String argument : arguments) {
+            if (isGlob(argument)) {
+                // walks from the part of the glob without any glob characters.
+                String normalized = argument.replace('\\', '/');
+                int firstGlob = normalized.length();
+                for (char c : GLOB_CHARS.toCharArray()) {
+                    int index = normalized.indexOf(c);
+                    if (index >= 0) {
+                        firstGlob = Math.min(firstGlob, index);
+                    }
+                }
+                int slash = normalized.lastIndexOf('/', firstGlob);
+                Path base = Paths.get(slash < 0 ? "." : normalized.substring(0, slash + 1));
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized.substring(slash + 1));
+                addMatching(files, base, path -> matcher.matches(base.relativize(path)));
+            } else {
+                Path path = Paths.get(argument);
+                if (Files.isDirectory(path)) {
+                    addMatching(files, path, file -> file.toString().endsWith(ASM_EXTENSION));
+                } else {
+                    // plain files are kept even if missing, so they are reported as failed.
+                    files.add(path.normalize());
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    // adds every regular file below a directory that passes the filter, sorted by path.
+    private static void addMatching(Set<Path> files, Path directory, PathMatcher filter) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            walk.filter(Files::isRegularFile).filter(filter::matches).map(Path::normalize).sorted().forEach(files::add);
+        }
+    }
+
+    // checks if an argument contains glob characters.
+    private static boolean isGlob(String argument) {
+        for (char c : GLOB_CHARS.toCharArray()) {
+            if (argument.indexOf(c) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the outcome of assembling one file, error is null if it was assembled and stats is null if it wasn't.
+    // instructions is -1 for a file skipped because it hadn't changed.
+    private static class Result {
+        final Path file;
+        final int instructions;
+        final long bytes;
+        final long nanos;
+        final String error;
+        final AssemblyStats stats;
+
+        Result(Path file, int instructions, long bytes, long nanos, String error, AssemblyStats stats) {
+            this.file = file;
+            this.instructions = instructions;
+            this.bytes = bytes;
+            this.nanos = nanos;
+            this.error = error;
+            this.stats = stats;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+/**
+ * Memoizes the encoding of whole C instructions. Generated Hack code reuses a small set of C instructions (D=M, M=D,
+ * AM=M-1, 0;JMP, ...) over and over, so the full clean text of an instruction is looked up first and only split into
+ * its dest, comp and jump mnemonics on a miss.
+ *
+ * The cache is a direct mapped table of a fixed number of slots, so its size is bounded no matter how many distinct
+ * instructions a program holds; a miss overwrites whatever was in its slot. The text of an instruction is packed into
+ * two longs, one byte per character, which covers every valid C instruction. Longer text is always a miss.
+ * A cache is not thread safe, each first pass uses its own.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class CInstructionCache {
+
+    // constants, the number of slots and the longest text that can be cached.
+    public static final int DEFAULT_SLOTS = 256;
+    private static final int MAX_TEXT = 16;
+
+    // instanced variables, each slot holds the packed text, its length and the encoded word.
+    private final CInstructionMapper mapper;
+    private final long[] lowTexts;
+    private final long[] highTexts;
+    private final int[]  lengths;
+    private final int[]  words;
+    private final int    mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor for a cache of DEFAULT_SLOTS slots.
+     * @param mapper the mapper used to encode an instruction on a miss.
+     */
+    public CInstructionCache(CInstructionMapper mapper) {
+        this(mapper, DEFAULT_SLOTS);
+    }
+
+    /**
+     * Constructor for a cache with a given number of slots.
+     * pre: slots is a power of two.
+     * post: an empty cache, every slot has length 0 which no instruction has.
+     * @param mapper the mapper used to encode an instruction on a miss.
+     * @param slots the number of slots.
+     */
+    public CInstructionCache(CInstructionMapper mapper, int slots) {
+        if (slots <= 0 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Cache slots must be a power of two: " + slots);
+        }
+        this.mapper = mapper;
+        lowTexts = new long[slots];
+        highTexts = new long[slots];
+        lengths = new int[slots];
+        words = new int[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     * Encodes a full C instruction from its clean text, straight from the cache if it has been seen before.
+     * pre: the text holds no whitespace or comments.
+     * post: returns the machine word if the instruction is valid, else returns -1.
+     * @param text the bytes holding the instruction.
+     * @param length the number of bytes of the instruction, starting at index 0.
+     * @return the 16 bit machine word, or -1.
+     */
+    public int encode(byte[] text, int length) {
+        if (length <= 0 || length > MAX_TEXT) {
+            misses++;
+            return mapper.encode(text, 0, length);
+        }
+
+        // packs the text, the first eight characters into low and the rest into high.
+        long low = 0;
+        long high = 0;
+        int split = Math.min(length, 8);
+        for (int i = 0; i < split; i++) {
+            low |= (text[i] & 0xFFL) << (i << 3);
+        }
+        for (int i = 8; i < length; i++) {
+            high |= (text[i] & 0xFFL) << ((i - 8) << 3);
+        }
+
+        int slot = slotOf(low, high, length);
+        if (lengths[slot] == length && lowTexts[slot] == low && highTexts[slot] == high) {
+            hits++;
+            return words[slot];
+        }
+
+        // miss, does the full parse and replaces the slot.
+        misses++;
+        int word = mapper.encode(text, 0, length);
+        lowTexts[slot] = low;
+        highTexts[slot] = high;
+        lengths[slot] = length;
+        words[slot] = word;
+        return word;
+    }
+
+    // mixes the packed text into a slot index.
+    private int slotOf(long low, long high, int length) {
+        long hash = (low * 0x9E3779B97F4A7C15L) ^ (high * 0xC2B2AE3D27D4EB4FL) ^ length;
+        return (int) (hash ^ (hash >>> 29) ^ (hash >>> 47)) & mask;
+    }
+
+    /*
+    getters
+     */
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+}
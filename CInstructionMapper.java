@@ -1,22 +1,50 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 
 /**
  * CInstructionMapper is a class used for testing specific mnemonics, codes, literal C Instructions against a specific
- * hash table filled with binary values that represent the instruction in machine code.
+ * hash table filled with the bit fields that represent the instruction in machine code. Instructions are encoded into
+ * 16 bit machine words held in an int.
  * @author vincentii
  * @version 1.0
  */
 public class CInstructionMapper {
 
-    // Hash Map, key: String | value: String.
+    // constants, the op code bits of a C instruction and the bit offsets of each field inside of the word.
+    // Word layout: 1 1 1 a c1 c2 c3 c4 c5 c6 d1 d2 d3 j1 j2 j3
+    private static final int C_OP_CODE    = 0b1110000000000000;
+    private static final int COMP_SHIFT   = 6;
+    private static final int DEST_SHIFT   = 3;
+
+    // constants, the destination bits of a C instruction, d1 - d3.
+    public static final int DEST_A = 0b100;
+    public static final int DEST_D = 0b010;
+    public static final int DEST_M = 0b001;
+
+    // constants for packed mnemonic keys, up to three ASCII characters packed into an int.
+    // an absent mnemonic packs to NO_MNEMONIC, anything that can't be a mnemonic packs to INVALID_MNEMONIC.
+    public static final int NO_MNEMONIC      = 0;
+    public static final int INVALID_MNEMONIC = -1;
+    private static final int KEY_SLOTS       = 64;
+
+    // Hash Map, key: String | value: Integer bit field.
     // Example: a, c1 - c6
     //                 a c1 - c6
     // Key: 0 | Value: 0 101010
     //                 a c1 - c6
     // Key: 1 | Value: 0 111111
-    private HashMap<String, String> compCodes;
-    private HashMap<String, String> jumpCodes;
-    private HashMap<String, String> destCodes;
+    private HashMap<String, Integer> compCodes;
+    private HashMap<String, Integer> jumpCodes;
+    private HashMap<String, Integer> destCodes;
+
+    // the same codes, keyed by packed mnemonic in open addressing tables of KEY_SLOTS.
+    private int[] compKeys   = new int[KEY_SLOTS];
+    private int[] compValues = new int[KEY_SLOTS];
+    private int[] jumpKeys   = new int[KEY_SLOTS];
+    private int[] jumpValues = new int[KEY_SLOTS];
+    private int[] destKeys   = new int[KEY_SLOTS];
+    private int[] destValues = new int[KEY_SLOTS];
 
     // Constructor
 
@@ -29,92 +57,283 @@ public class CInstructionMapper {
 
         // Initializes compCodes and jumpCodes and destCodes
         compCodes = new HashMap<>();
-        compCodes.put("0",   "0101010");
-        compCodes.put("1",   "0111111");
-        compCodes.put("-1",  "0111010");
-        compCodes.put("D",   "0001100");
-        compCodes.put("A",   "0110000");
-        compCodes.put("!D",  "0001101");
-        compCodes.put("!A",  "0110001");
-        compCodes.put("-D",  "0001111");
-        compCodes.put("-A",  "0110011");
-        compCodes.put("D+1", "0011111");
-        compCodes.put("A+1", "0110111");
-        compCodes.put("D-1", "0001110");
-        compCodes.put("A-1", "0110010");
-        compCodes.put("D+A", "0000010");
-        compCodes.put("D-A", "0010011");
-        compCodes.put("A-D", "0000111");
-        compCodes.put("D&A", "0000000");
-        compCodes.put("D|A", "0010101");
-        compCodes.put("M",   "1110000");
-        compCodes.put("!M",  "1110001");
-        compCodes.put("-M",  "1110011");
-        compCodes.put("M+1", "1110111");
-        compCodes.put("M-1", "1110010");
-        compCodes.put("D+M", "1000010");
-        compCodes.put("D-M", "1010011");
-        compCodes.put("M-D", "1000111");
-        compCodes.put("D&M", "1000000");
-        compCodes.put("D|M", "1010101");
+        compCodes.put("0",   0b0101010);
+        compCodes.put("1",   0b0111111);
+        compCodes.put("-1",  0b0111010);
+        compCodes.put("D",   0b0001100);
+        compCodes.put("A",   0b0110000);
+        compCodes.put("!D",  0b0001101);
+        compCodes.put("!A",  0b0110001);
+        compCodes.put("-D",  0b0001111);
+        compCodes.put("-A",  0b0110011);
+        compCodes.put("D+1", 0b0011111);
+        compCodes.put("A+1", 0b0110111);
+        compCodes.put("D-1", 0b0001110);
+        compCodes.put("A-1", 0b0110010);
+        compCodes.put("D+A", 0b0000010);
+        compCodes.put("D-A", 0b0010011);
+        compCodes.put("A-D", 0b0000111);
+        compCodes.put("D&A", 0b0000000);
+        compCodes.put("D|A", 0b0010101);
+        compCodes.put("M",   0b1110000);
+        compCodes.put("!M",  0b1110001);
+        compCodes.put("-M",  0b1110011);
+        compCodes.put("M+1", 0b1110111);
+        compCodes.put("M-1", 0b1110010);
+        compCodes.put("D+M", 0b1000010);
+        compCodes.put("D-M", 0b1010011);
+        compCodes.put("M-D", 0b1000111);
+        compCodes.put("D&M", 0b1000000);
+        compCodes.put("D|M", 0b1010101);
 
 
         jumpCodes = new HashMap<>();
-        jumpCodes.put(null, "000");
-        jumpCodes.put("JGT",  "001");
-        jumpCodes.put("JEQ",  "010");
-        jumpCodes.put("JGE",  "011");
-        jumpCodes.put("JLT",  "100");
-        jumpCodes.put("JNE",  "101");
-        jumpCodes.put("JLE",  "110");
-        jumpCodes.put("JMP",  "111");
+        jumpCodes.put(null, 0b000);
+        jumpCodes.put("JGT",  0b001);
+        jumpCodes.put("JEQ",  0b010);
+        jumpCodes.put("JGE",  0b011);
+        jumpCodes.put("JLT",  0b100);
+        jumpCodes.put("JNE",  0b101);
+        jumpCodes.put("JLE",  0b110);
+        jumpCodes.put("JMP",  0b111);
 
 
         destCodes = new HashMap<>();
-        destCodes.put(null, "000");
-        destCodes.put("M",    "001");
-        destCodes.put("D",    "010");
-        destCodes.put("MD",   "011");
-        destCodes.put("A",    "100");
-        destCodes.put("AM",   "101");
-        destCodes.put("AD",   "110");
-        destCodes.put("AMD",  "111");
+        destCodes.put(null, 0b000);
+        destCodes.put("M",    0b001);
+        destCodes.put("D",    0b010);
+        destCodes.put("MD",   0b011);
+        destCodes.put("A",    0b100);
+        destCodes.put("AM",   0b101);
+        destCodes.put("AD",   0b110);
+        destCodes.put("AMD",  0b111);
 
+        // builds the packed key tables.
+        fillKeys(compCodes, compKeys, compValues);
+        fillKeys(jumpCodes, jumpKeys, jumpValues);
+        fillKeys(destCodes, destKeys, destValues);
 
     }
 
     /**
      * Uses a string value as a key, to look up a value inside of the compCodes Hash Table.
      * pre: hashMaps are built with valid values.
-     * post: returns a String of bits if valid, else returns null.
+     * post: returns the 7 bit field (a, c1 - c6) if valid, else returns -1.
      * @param mnemonic the key.
      * @return the value associated inside of the compCodes Hash Table with passed key.
      */
-    public String comp(String mnemonic) {
-        // if the mnemonic String value exist within the compCode hash table, will return the binary value.
-        return compCodes.get(mnemonic);
+    public int comp(String mnemonic) {
+        // if the mnemonic String value exist within the compCode hash table, will return the bit field.
+        return lookup(compCodes, mnemonic);
     }
 
     /**
      * Uses a string value as a key, to look up a value inside of the destCodes Hash Table.
      * pre: hashMaps are built with valid values.
-     * post: returns a String of bits if valid, else returns null.
+     * post: returns the 3 bit field (d1 - d3) if valid, else returns -1.
      * @param mnemonic the key.
-     * @return the value associated inside of the compCodes Hash Table with passed key.
+     * @return the value associated inside of the destCodes Hash Table with passed key.
      */
-    public String dest(String mnemonic) {
-        return destCodes.get(mnemonic);
+    public int dest(String mnemonic) {
+        return lookup(destCodes, mnemonic);
     }
 
     /**
-     * Uses a string value as a key, to look up as value inside of the destCodes Hash Table.
+     * Uses a string value as a key, to look up as value inside of the jumpCodes Hash Table.
      * pre: hashMaps are built with valid values.
-     * post: returns a String of bits if valid, else returns null.
+     * post: returns the 3 bit field (j1 - j3) if valid, else returns -1.
      * @param mnemonic the key.
-     * @return the value associated inside of the compCodes Hash Table with passed key.
+     * @return the value associated inside of the jumpCodes Hash Table with passed key.
+     */
+    public int jump(String mnemonic) {
+        return lookup(jumpCodes, mnemonic);
+    }
+
+    /**
+     * Encodes a full C instruction into its 16 bit machine word by OR-ing the op code and the three bit fields.
+     * pre: hashMaps are built with valid values.
+     * post: returns the machine word if every mnemonic is valid, else returns -1.
+     * @param dest the destination mnemonic, or null.
+     * @param comp the computation mnemonic.
+     * @param jump the jump mnemonic, or null.
+     * @return the 16 bit machine word, or -1.
+     */
+    public int encode(String dest, String comp, String jump) {
+        int compBits = comp(comp);
+        int destBits = dest(dest);
+        int jumpBits = jump(jump);
+        if (compBits < 0 || destBits < 0 || jumpBits < 0) {
+            return -1;
+        }
+        return C_OP_CODE | (compBits << COMP_SHIFT) | (destBits << DEST_SHIFT) | jumpBits;
+    }
+
+    /**
+     * Encodes a full C instruction from packed mnemonic keys, as handed out by Parser, without allocating.
+     * pre: tables are built with valid values.
+     * post: returns the machine word if every key is valid, else returns -1.
+     * @param destKey the packed destination mnemonic.
+     * @param compKey the packed computation mnemonic.
+     * @param jumpKey the packed jump mnemonic.
+     * @return the 16 bit machine word, or -1.
+     */
+    public int encode(int destKey, int compKey, int jumpKey) {
+        int compBits = lookup(compKeys, compValues, compKey);
+        int destBits = lookup(destKeys, destValues, destKey);
+        int jumpBits = lookup(jumpKeys, jumpValues, jumpKey);
+        if (compBits < 0 || destBits < 0 || jumpBits < 0) {
+            return -1;
+        }
+        return C_OP_CODE | (compBits << COMP_SHIFT) | (destBits << DEST_SHIFT) | jumpBits;
+    }
+
+    /**
+     * Encodes a full C instruction from its clean text held as ASCII bytes, splitting it at the first = and ;.
+     * pre: tables are built with valid values, the text holds no whitespace or comments.
+     * post: returns the machine word if every mnemonic is valid, else returns -1.
+     * @param text the bytes holding the instruction.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @return the 16 bit machine word, or -1.
+     */
+    public int encode(byte[] text, int start, int end) {
+        int equalsIndex = -1;
+        int semicolonIndex = -1;
+        for (int i = start; i < end; i++) {
+            if (text[i] == '=' && equalsIndex < 0) {
+                equalsIndex = i;
+            } else if (text[i] == ';' && semicolonIndex < 0) {
+                semicolonIndex = i;
+            }
+        }
+        int compStart = (equalsIndex != -1) ? equalsIndex + 1 : start;
+        int compEnd = (semicolonIndex != -1) ? semicolonIndex : end;
+        int destKey = (equalsIndex != -1) ? key(text, start, equalsIndex) : NO_MNEMONIC;
+        int jumpKey = (semicolonIndex != -1) ? key(text, semicolonIndex + 1, end) : NO_MNEMONIC;
+        return encode(destKey, key(text, compStart, compEnd), jumpKey);
+    }
+
+    /**
+     * Packs a mnemonic held as ASCII bytes into an int key.
+     * @param buffer the bytes holding the mnemonic.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @return the packed key, or INVALID_MNEMONIC if the range is empty, longer than any mnemonic or not ASCII.
      */
-    public String jump(String mnemonic) {
-        return jumpCodes.get(mnemonic);
+    public static int key(byte[] buffer, int start, int end) {
+        int length = end - start;
+        if (length <= 0 || length > 3) {
+            return INVALID_MNEMONIC;
+        }
+        int key = 0;
+        for (int i = end - 1; i >= start; i--) {
+            if (buffer[i] <= 0) {
+                return INVALID_MNEMONIC;
+            }
+            key = (key << 8) | buffer[i];
+        }
+        return key;
+    }
+
+    /**
+     * Encodes an A instruction into its 16 bit machine word.
+     * pre: address is at least 0.
+     * post: returns the machine word, the op code bit is 0.
+     * @param address the address or constant to load into the A register.
+     * @param lineNumber the source line of the instruction.
+     * @return the 16 bit machine word.
+     * @throws AssemblyException if the address doesn't fit in an A instruction.
+     */
+    public static int encodeAddress(int address, int lineNumber) {
+        if (address > Assembler.MAX_ADDRESS) {
+            throw new AssemblyException("Address out of range", lineNumber);
+        }
+        return address;
+    }
+
+    /*
+    decoding, the fields of an encoded word.
+     */
+
+    /**
+     * @param word a 16 bit machine word.
+     * @return true if the word is a C instruction, A instructions never have the top bit set.
+     */
+    public static boolean isCInstruction(int word) {
+        return (word & C_OP_CODE) == C_OP_CODE;
+    }
+
+    /**
+     * @param word an encoded C instruction.
+     * @return the 7 bit computation field, a and c1 - c6.
+     */
+    public static int compBits(int word) {
+        return (word >>> COMP_SHIFT) & 0b1111111;
+    }
+
+    /**
+     * @param word an encoded C instruction.
+     * @return the 3 bit destination field, d1 - d3.
+     */
+    public static int destBits(int word) {
+        return (word >>> DEST_SHIFT) & 0b111;
+    }
+
+    /**
+     * @param word an encoded C instruction.
+     * @return the 3 bit jump field, j1 - j3.
+     */
+    public static int jumpBits(int word) {
+        return word & 0b111;
+    }
+
+    // packs a mnemonic held as a String, null packs to NO_MNEMONIC.
+    private static int key(String mnemonic) {
+        if (mnemonic == null) {
+            return NO_MNEMONIC;
+        }
+        byte[] bytes = mnemonic.getBytes(StandardCharsets.US_ASCII);
+        return key(bytes, 0, bytes.length);
+    }
+
+    // places every code of a hashMap into an open addressing table keyed by packed mnemonic.
+    private static void fillKeys(HashMap<String, Integer> codes, int[] keys, int[] values) {
+        Arrays.fill(keys, INVALID_MNEMONIC);
+        for (String mnemonic : codes.keySet()) {
+            int key = key(mnemonic);
+            int slot = slotOf(key);
+            while (keys[slot] != INVALID_MNEMONIC) {
+                slot = (slot + 1) & (KEY_SLOTS - 1);
+            }
+            keys[slot] = key;
+            values[slot] = codes.get(mnemonic);
+        }
+    }
+
+    // looks up a packed mnemonic, -1 if the key is not in the table.
+    private static int lookup(int[] keys, int[] values, int key) {
+        if (key == INVALID_MNEMONIC) {
+            return -1;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != INVALID_MNEMONIC) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & (KEY_SLOTS - 1);
+        }
+        return -1;
+    }
+
+    // spreads a packed key over KEY_SLOTS slots.
+    private static int slotOf(int key) {
+        return (key * 0x9E3779B1) >>> 26;
+    }
+
+    // looks up a mnemonic, -1 if the mnemonic is not a valid key.
+    private static int lookup(HashMap<String, Integer> codes, String mnemonic) {
+        Integer bits = codes.get(mnemonic);
+        return (bits != null) ? bits : -1;
     }
 
 }
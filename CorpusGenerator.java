@@ -0,0 +1,222 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Writes synthetic ASM programs for benchmarking, in the style of VM translator output. The same profile, line count
+ * and seed always give the same program, so timings can be compared across changes.
+ *
+ * Programs are made of blocks, each starting with a label and ending in a jump to a nearby block, forwards or
+ * backwards. Every program assembles, every referenced label is defined. Profiles:
+ * LABEL: short blocks, a label and a jump every few lines.
+ * VARIABLE: long blocks working on many distinct variables.
+ * COMMENT: full line and trailing comments, indentation and blank lines between the instructions.
+ *
+ * Usage: java CorpusGenerator label|variable|comment lines [seed] [file.asm]
+ * Without a file, the program is written to standard out.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class CorpusGenerator {
+
+    // constants.
+    public static final long DEFAULT_SEED = 0x48414B;
+    private static final int JUMP_DISTANCE = 8;
+    private static final int MAX_VARIABLES = 16000;
+    private static final String[] JUMPS = {"JGT", "JEQ", "JGE", "JLT", "JNE", "JLE"};
+    private static final String[] POINTERS = {"SP", "LCL", "ARG", "THIS", "THAT"};
+
+    /**
+     * The shape of a generated program.
+     */
+    public enum Profile {
+        LABEL(4, 1000),
+        VARIABLE(24, MAX_VARIABLES),
+        COMMENT(12, 200);
+
+        // instructions per block, and the number of distinct variables.
+        private final int blockLength;
+        private final int variables;
+
+        Profile(int blockLength, int variables) {
+            this.blockLength = blockLength;
+            this.variables = variables;
+        }
+    }
+
+    // instanced variables.
+    private final Profile profile;
+    private final Random random;
+    private final Writer out;
+    private int lines;
+    private int nextBlock;
+    private int lastReferenced = -1;
+
+    // generators are only used through generate().
+    private CorpusGenerator(Profile profile, long seed, Writer out) {
+        this.profile = profile;
+        this.random = new Random(seed);
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java CorpusGenerator label|variable|comment lines [seed] [file.asm]");
+            System.exit(1);
+        }
+        Profile profile = Profile.valueOf(args[0].toUpperCase());
+        int lines = Integer.parseInt(args[1]);
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : DEFAULT_SEED;
+        Writer out = (args.length > 3)
+                     ? Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.US_ASCII)
+                     : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.US_ASCII), 1 << 16);
+        try {
+            generate(profile, lines, seed, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes a program of at least the given number of lines, the last block is finished and any label a jump
+     * points past the end is defined.
+     * @param profile the shape of the program.
+     * @param lines the number of lines to write.
+     * @param seed the seed of the program.
+     * @param out where the program is written, flushed but not closed.
+     * @throws IOException if the program can't be written.
+     */
+    public static void generate(Profile profile, int lines, long seed, Writer out) throws IOException {
+        new CorpusGenerator(profile, seed, out).generate(lines);
+        out.flush();
+    }
+
+    /**
+     * Builds a program in memory, see generate(Profile, int, long, Writer).
+     * @param profile the shape of the program.
+     * @param lines the number of lines to write.
+     * @param seed the seed of the program.
+     * @return the program as ASCII text.
+     */
+    public static byte[] generate(Profile profile, int lines, long seed) {
+        StringWriter text = new StringWriter();
+        try {
+            generate(profile, lines, seed, text);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return text.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // writes blocks until the line count is reached, then defines the labels jumped to past the end.
+    private void generate(int lineCount) throws IOException {
+        line("// generated " + profile.name().toLowerCase() + " program, seed " + random.nextInt());
+        while (lines < lineCount) {
+            block();
+        }
+        while (nextBlock <= lastReferenced) {
+            label(nextBlock++);
+        }
+        line("(END)");
+        line("@END");
+        line("0;JMP");
+    }
+
+    // one block, a label, a body of instructions and a jump.
+    private void block() throws IOException {
+        int block = nextBlock++;
+        if (profile == Profile.COMMENT) {
+            line("// function block " + block + ", generated from Main.vm");
+        }
+        label(block);
+        for (int i = 0; i < profile.blockLength; i++) {
+            instruction();
+        }
+
+        // jumps to a block close by, never past block 0.
+        int target = Math.max(0, block + random.nextInt(2 * JUMP_DISTANCE + 1) - JUMP_DISTANCE);
+        lastReferenced = Math.max(lastReferenced, target);
+        line(indent() + "@" + labelName(target) + comment("jump target"));
+        line(indent() + "D;" + JUMPS[random.nextInt(JUMPS.length)]);
+        if (profile == Profile.COMMENT && random.nextInt(4) == 0) {
+            line("");
+        }
+    }
+
+    // one instruction of a block body, or a pair that loads and uses a value.
+    private void instruction() throws IOException {
+        switch (random.nextInt(6)) {
+            case 0:
+                line(indent() + "@" + random.nextInt(32768) + comment("constant"));
+                line(indent() + "D=A");
+                break;
+            case 1:
+                line(indent() + "@" + POINTERS[random.nextInt(POINTERS.length)]);
+                line(indent() + "AM=M-1" + comment("pop"));
+                break;
+            case 2:
+                line(indent() + "@" + variableName(random.nextInt(profile.variables)) + comment("static"));
+                line(indent() + (random.nextBoolean() ? "M=D" : "D=M"));
+                break;
+            case 3:
+                line(indent() + "@R" + random.nextInt(16));
+                line(indent() + "M=D+M");
+                break;
+            case 4:
+                line(indent() + "A=A-1");
+                break;
+            default:
+                line(indent() + "M=D" + comment("push"));
+                break;
+        }
+        if (profile == Profile.VARIABLE) {
+            line(indent() + "@" + variableName(random.nextInt(profile.variables)));
+            line(indent() + "M=M+1");
+        }
+        if (profile == Profile.COMMENT && random.nextInt(3) == 0) {
+            line("// " + "intermediate result kept in D for the next instruction".substring(random.nextInt(20)));
+        }
+    }
+
+    // a label definition.
+    private void label(int block) throws IOException {
+        line("(" + labelName(block) + ")" + comment("block"));
+    }
+
+    private static String labelName(int block) {
+        return "MAIN.BLOCK_" + block;
+    }
+
+    private static String variableName(int variable) {
+        return "main.static" + variable;
+    }
+
+    // indentation, only the comment profile varies it.
+    private String indent() {
+        if (profile != Profile.COMMENT) {
+            return "";
+        }
+        return random.nextBoolean() ? "    " : "\t";
+    }
+
+    // a trailing comment, only in the comment profile.
+    private String comment(String text) {
+        if (profile != Profile.COMMENT || random.nextBoolean()) {
+            return "";
+        }
+        return "   // " + text;
+    }
+
+    private void line(String text) throws IOException {
+        out.write(text);
+        out.write('\n');
+        lines++;
+    }
+
+}
@@ -0,0 +1,143 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles removing the code of a whole program that can never run, before any label is given its address, then
+ * packing the variables still referenced from RAM 16 up.
+ * 1: Control flows from ROM address 0 to the next instruction, unless the instruction jumps unconditionally, and to
+ *    every label an A instruction loads. A label loaded for a jump is a branch, a label loaded into D or memory is
+ *    a return address a computed jump may come back to, so both count as reachable.
+ * 2: Every instruction never reached is removed, and every label moved to the new address of its instruction.
+ * 3: Variables are allocated in the order the remaining code first references them, so a variable only used by
+ *    dead code gets no RAM and leaves no gap.
+ *
+ * Jumps into a block from a computed address are trusted to use a label loaded somewhere in reachable code, which
+ * only holds for a value read from RAM while every write to memory stores a label or another value read from RAM.
+ * Programs jumping to numeric ROM addresses other than 0, to arithmetic on a label or a number, or to RAM once a
+ * number may have been written there, can't be moved around, and are left as they are, see PeepholeOptimizer.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class DeadCodeEliminator {
+
+    // constants, the jump bits of JMP.
+    private static final int UNCONDITIONAL = 0b111;
+
+    // instanced variables, the instructions and variables removed, and why the program was left alone.
+    private int removedInstructions;
+    private int removedVariables;
+    private String skipReason;
+
+    /**
+     * Removes the unreachable code of a parsed chunk in place, its labels are moved and its variables repacked.
+     * @param chunk a chunk holding a whole program, parsed without errors.
+     * @return the number of instructions removed.
+     */
+    int eliminate(ParallelAssembler.Chunk chunk) {
+        InstructionList instructions = chunk.instructions;
+        skipReason = PeepholeOptimizer.findNumericJump(chunk);
+        if (skipReason != null) {
+            return 0;
+        }
+
+        boolean[] reachable = reachable(instructions, chunk.labels);
+        boolean[] remove = new boolean[instructions.size()];
+        int removed = 0;
+        for (int i = 0; i < remove.length; i++) {
+            remove[i] = !reachable[i];
+            if (remove[i]) {
+                removed++;
+            }
+        }
+        if (removed == 0) {
+            return 0;
+        }
+
+        int[] newIndex = instructions.remove(remove);
+        for (int i = 0; i < chunk.labels.size(); i++) {
+            ParallelAssembler.Label label = chunk.labels.get(i);
+            chunk.labels.set(i, new ParallelAssembler.Label(label.name, newIndex[label.address], label.lineNumber));
+        }
+        repack(chunk);
+        removedInstructions += removed;
+        return removed;
+    }
+
+    // marks every instruction control can reach from address 0, one straight run of code at a time.
+    private static boolean[] reachable(InstructionList instructions, List<ParallelAssembler.Label> labels) {
+        int size = instructions.size();
+        Map<String, Integer> addresses = new HashMap<>();
+        for (ParallelAssembler.Label label : labels) {
+            addresses.putIfAbsent(label.name, label.address);
+        }
+
+        // every address is pushed at most once, when it is first marked.
+        boolean[] reachable = new boolean[size + 1];
+        int[] work = new int[size + 1];
+        int top = 0;
+        reachable[0] = true;
+        work[top++] = 0;
+        while (top > 0) {
+            int i = work[--top];
+            while (i < size) {
+                if (instructions.getKind(i) == Command.A_COMMAND) {
+                    Integer target = instructions.isResolved(i) ? null : addresses.get(instructions.getSymbol(i));
+                    if (target != null && !reachable[target]) {
+                        reachable[target] = true;
+                        work[top++] = target;
+                    }
+                } else if (CInstructionMapper.jumpBits(instructions.getWord(i)) == UNCONDITIONAL) {
+                    break;
+                }
+                if (reachable[i + 1]) {
+                    break;
+                }
+                reachable[++i] = true;
+            }
+        }
+        return reachable;
+    }
+
+    // keeps only the variables the remaining code references, in the order it first references them.
+    private void repack(ParallelAssembler.Chunk chunk) {
+        Set<String> unplaced = new HashSet<>(chunk.variables);
+        int before = chunk.variables.size();
+        chunk.variables.clear();
+        InstructionList instructions = chunk.instructions;
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!instructions.isResolved(i) && unplaced.remove(instructions.getSymbol(i))) {
+                chunk.variables.add(instructions.getSymbol(i));
+            }
+        }
+        removedVariables += before - chunk.variables.size();
+    }
+
+    /*
+    getters
+     */
+
+    /**
+     * @return the instructions removed so far.
+     */
+    public int getRemovedInstructions() {
+        return removedInstructions;
+    }
+
+    /**
+     * @return the variables that no longer get a RAM address.
+     */
+    public int getRemovedVariables() {
+        return removedVariables;
+    }
+
+    /**
+     * @return why the last program was left as it was, or null if its dead code was removed.
+     */
+    public String getSkipReason() {
+        return skipReason;
+    }
+
+}
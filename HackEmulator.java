@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Handles running assembled programs on an emulated Hack CPU, so generated code can be benchmarked without the
+ * course tools.
+ * ROM and RAM hold 32K words each. The screen from 16384 and the keyboard at 24576 are plain RAM, nothing is drawn
+ * and no key is ever pressed unless the caller pokes one in. Every instruction takes one cycle, and the executions
+ * of every ROM address are counted so the hottest code can be reported by the labels around it.
+ *
+ * The run loop has no display or timer, it stops when the program halts or a cycle limit is reached. A program
+ * halts when it runs past its last instruction, or jumps to an A instruction loading its own address with nothing
+ * changed on the way, the usual (END) @END 0;JMP.
+ *
+ * Usage: java HackEmulator program.asm|program.hack|program.bin|program.rom [--cycles=N] [--top=N]
+ * ASM files are assembled in memory and their labels are used in the report, other files are reported by address.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class HackEmulator {
+
+    // constants, the size of ROM and RAM, and the memory mapped regions.
+    public static final int MEMORY_SIZE = 32768;
+    public static final int SCREEN = 16384;
+    public static final int KBD = 24576;
+    private static final int ADDRESS_MASK = MEMORY_SIZE - 1;
+
+    // the a bit of the computation, and the ALU control bits after it.
+    private static final int A_BIT = 0b1000000;
+    private static final int ZERO_X = 0b100000;
+    private static final int NOT_X = 0b010000;
+    private static final int ZERO_Y = 0b001000;
+    private static final int NOT_Y = 0b000100;
+    private static final int ADD = 0b000010;
+    private static final int NOT_OUT = 0b000001;
+
+    // the jump bits, j1 - j3.
+    private static final int JUMP_NEGATIVE = 0b100;
+    private static final int JUMP_ZERO = 0b010;
+    private static final int JUMP_POSITIVE = 0b001;
+
+    // command line options, and their defaults.
+    private static final String CYCLES = "--cycles=";
+    private static final String TOP = "--top=";
+    private static final long DEFAULT_CYCLES = 1000000000L;
+    private static final int DEFAULT_TOP = 10;
+
+    // instanced variables, memory and the execution count of each ROM address.
+    private final int[] rom = new int[MEMORY_SIZE];
+    private final int[] ram = new int[MEMORY_SIZE];
+    private final long[] executions = new long[MEMORY_SIZE];
+    private final int programSize;
+
+    // the CPU, registers hold 16 bit values sign extended.
+    private int pc;
+    private int a;
+    private int d;
+    private long cycles;
+    private boolean halted;
+
+    /**
+     * @param words the machine words of the program, loaded into ROM from address 0.
+     * @throws AssemblyException if the program doesn't fit in ROM.
+     */
+    public HackEmulator(int[] words) {
+        if (words.length > MEMORY_SIZE) {
+            throw new AssemblyException("Program of " + words.length + " words doesn't fit in ROM");
+        }
+        System.arraycopy(words, 0, rom, 0, words.length);
+        this.programSize = words.length;
+    }
+
+    public static void main(String[] args) {
+        String fileName = null;
+        long maxCycles = DEFAULT_CYCLES;
+        int top = DEFAULT_TOP;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith(CYCLES)) {
+                    maxCycles = Long.parseLong(arg.substring(CYCLES.length()));
+                } else if (arg.startsWith(TOP)) {
+                    top = Integer.parseInt(arg.substring(TOP.length()));
+                } else if (fileName == null && !arg.startsWith("--")) {
+                    fileName = arg;
+                } else {
+                    throw new AssemblyException("Unknown option " + arg);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Error: bad number " + e.getMessage());
+            System.exit(1);
+        } catch (AssemblyException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (fileName == null) {
+            System.err.println("Usage: java HackEmulator program.asm|program.hack|program.bin|program.rom "
+                               + "[--cycles=N] [--top=N]");
+            System.exit(1);
+        }
+
+        try {
+            Map<String, Integer> symbols = Collections.emptyMap();
+            int[] words;
+            if (fileName.endsWith(".asm")) {
+                AssemblyResult result = Assembler.assemble(Paths.get(fileName));
+                words = result.getWords();
+                symbols = result.getSymbols();
+            } else {
+                words = load(Paths.get(fileName));
+            }
+
+            HackEmulator emulator = new HackEmulator(words);
+            long startTime = System.nanoTime();
+            emulator.run(maxCycles);
+            long elapsed = Math.max(1, System.nanoTime() - startTime);
+            System.out.printf("%s after %d cycles at PC %d in %d MS, %.0f instructions/s%n",
+                              emulator.isHalted() ? "Halted" : "Stopped", emulator.getCycles(), emulator.getPc(),
+                              elapsed / 1000000, emulator.getCycles() * 1e9 / elapsed);
+            System.out.print(emulator.profile(symbols, top));
+        } catch (AssemblyException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Error: could not read " + fileName + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Loads the machine words of an assembled program, HACK text or a RAW or ROM image, by file extension.
+     * @param path the program.
+     * @return the machine words.
+     * @throws IOException if the file couldn't be read, or isn't a valid image.
+     * @throws AssemblyException if a line of HACK text isn't 16 binary digits.
+     */
+    public static int[] load(Path path) throws IOException {
+        if (OutputFormat.forFileName(path.toString()) != OutputFormat.HACK) {
+            return RomImage.open(path).toArray();
+        }
+        List<String> lines = Files.readAllLines(path, StandardCharsets.ISO_8859_1);
+        int[] words = new int[lines.size()];
+        int count = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.length() != 16 || !line.matches("[01]+")) {
+                throw new AssemblyException("Bad machine word " + line, i + 1);
+            }
+            words[count++] = Integer.parseInt(line, 2);
+        }
+        int[] program = new int[count];
+        System.arraycopy(words, 0, program, 0, count);
+        return program;
+    }
+
+    /**
+     * Runs the program until it halts or has run for the given number of cycles, can be called again to continue.
+     * @param maxCycles the most instructions to execute in this call.
+     * @return the number of instructions executed in this call.
+     */
+    public long run(long maxCycles) {
+        // the registers are kept in locals so the loop never touches a field.
+        int[] rom = this.rom;
+        int[] ram = this.ram;
+        long[] executions = this.executions;
+        int size = programSize;
+        int pc = this.pc;
+        int a = this.a;
+        int d = this.d;
+        long executed = 0;
+
+        while (!halted && executed < maxCycles) {
+            if (pc >= size) {
+                halted = true;
+                break;
+            }
+            int word = rom[pc];
+            executions[pc]++;
+            executed++;
+
+            if (!CInstructionMapper.isCInstruction(word)) {
+                a = word;
+                pc++;
+                continue;
+            }
+            int comp = CInstructionMapper.compBits(word);
+            int out = alu(comp, d, ((comp & A_BIT) != 0) ? ram[a & ADDRESS_MASK] : a);
+            int dest = CInstructionMapper.destBits(word);
+            int target = a & ADDRESS_MASK;
+            if ((dest & CInstructionMapper.DEST_M) != 0) {
+                ram[target] = out;
+            }
+            if ((dest & CInstructionMapper.DEST_A) != 0) {
+                a = out;
+            }
+            if ((dest & CInstructionMapper.DEST_D) != 0) {
+                d = out;
+            }
+
+            if (jumps(CInstructionMapper.jumpBits(word), out)) {
+                // back to the A instruction right before, loading its own address, with nothing written.
+                if (dest == 0 && target == pc - 1 && rom[target] == target) {
+                    halted = true;
+                }
+                pc = target;
+            } else {
+                pc++;
+            }
+        }
+
+        this.pc = pc;
+        this.a = a;
+        this.d = d;
+        cycles += executed;
+        return executed;
+    }
+
+    // the Hack ALU, x is D and y is A or M, giving a 16 bit result sign extended.
+    private static int alu(int comp, int x, int y) {
+        if ((comp & ZERO_X) != 0) {
+            x = 0;
+        }
+        if ((comp & NOT_X) != 0) {
+            x = ~x;
+        }
+        if ((comp & ZERO_Y) != 0) {
+            y = 0;
+        }
+        if ((comp & NOT_Y) != 0) {
+            y = ~y;
+        }
+        int out = ((comp & ADD) != 0) ? x + y : x & y;
+        if ((comp & NOT_OUT) != 0) {
+            out = ~out;
+        }
+        return (short) out;
+    }
+
+    // checks the jump bits against the ALU output.
+    private static boolean jumps(int jump, int out) {
+        return ((jump & JUMP_NEGATIVE) != 0 && out < 0)
+               || ((jump & JUMP_ZERO) != 0 && out == 0)
+               || ((jump & JUMP_POSITIVE) != 0 && out > 0);
+    }
+
+    /**
+     * Clears the registers, RAM and execution counts, the program stays in ROM.
+     */
+    public void reset() {
+        pc = 0;
+        a = 0;
+        d = 0;
+        cycles = 0;
+        halted = false;
+        Arrays.fill(ram, 0);
+        Arrays.fill(executions, 0);
+    }
+
+    /**
+     * Reports where the cycles went, by the code from each label up to the next one, hottest first. Without any
+     * labels every ROM address is reported on its own.
+     * @param symbols the symbols of the program, only labels are used.
+     * @param top the most lines to report.
+     * @return one line per label, its ROM addresses, executions and share of every cycle.
+     */
+    public String profile(Map<String, Integer> symbols, int top) {
+        // the first label in name order at each address starts a region, predefined symbols and variables don't.
+        SymbolTable predefined = new SymbolTable();
+        TreeMap<Integer, String> starts = new TreeMap<>();
+        for (Map.Entry<String, Integer> symbol : symbols.entrySet()) {
+            String name = symbol.getKey();
+            if (!predefined.contains(name) && (SymbolTable.classify(name) & SymbolTable.LABEL) != 0
+                && symbol.getValue() < programSize) {
+                starts.merge(symbol.getValue(), name,
+                             (first, second) -> (first.compareTo(second) <= 0) ? first : second);
+            }
+        }
+        if (starts.isEmpty()) {
+            for (int address = 0; address < programSize; address++) {
+                starts.put(address, "ROM[" + address + "]");
+            }
+        } else if (!starts.containsKey(0)) {
+            starts.put(0, "(start)");
+        }
+
+        List<long[]> regions = new ArrayList<>();
+        for (Map.Entry<Integer, String> start : starts.entrySet()) {
+            Integer next = starts.higherKey(start.getKey());
+            int end = (next != null) ? next : programSize;
+            long total = 0;
+            for (int address = start.getKey(); address < end; address++) {
+                total += executions[address];
+            }
+            if (total > 0) {
+                regions.add(new long[] {total, start.getKey(), end});
+            }
+        }
+        regions.sort((first, second) -> Long.compare(second[0], first[0]));
+
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < Math.min(top, regions.size()); i++) {
+            long[] region = regions.get(i);
+            report.append(String.format("%-24s ROM %5d-%-5d %14d cycles %6.2f%%%n", starts.get((int) region[1]),
+                                        region[1], region[2] - 1, region[0], 100.0 * region[0] / Math.max(1, cycles)));
+        }
+        return report.toString();
+    }
+
+    /**
+     * @param address a RAM address.
+     * @return the value at the address, sign extended from 16 bits.
+     */
+    public int peek(int address) {
+        return ram[address & ADDRESS_MASK];
+    }
+
+    /**
+     * Sets a RAM value, such as a key code at KBD.
+     * @param address a RAM address.
+     * @param value the value, cut to 16 bits.
+     */
+    public void poke(int address, int value) {
+        ram[address & ADDRESS_MASK] = (short) value;
+    }
+
+    /*
+    getters
+     */
+
+    public int getPc() {
+        return pc;
+    }
+
+    public int getA() {
+        return a;
+    }
+
+    public int getD() {
+        return d;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    /**
+     * @param address a ROM address.
+     * @return how many times the instruction at the address was executed.
+     */
+    public long getExecutions(int address) {
+        return executions[address & ADDRESS_MASK];
+    }
+
+}
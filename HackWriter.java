@@ -0,0 +1,139 @@
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes 16 bit machine words out as HACK text, one 17 byte record ("0101...\n") per word.
+ * Records are rendered a byte of the word at a time through a precomputed lookup table into a large reused buffer,
+ * which is only written to the stream when it is full or the writer is flushed / closed.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class HackWriter implements Closeable {
+
+    // constants, the size of one record and the number of records held before writing.
+    public static final int RECORD_SIZE = 17;
+    private static final int BUFFERED_RECORDS = 4096;
+
+    // lookup table, the 8 ASCII digits for every possible byte value.
+    private static final byte[] BYTE_DIGITS = new byte[256 * 8];
+    static {
+        for (int value = 0; value < 256; value++) {
+            for (int bit = 0; bit < 8; bit++) {
+                BYTE_DIGITS[value * 8 + bit] = (byte) ('0' + ((value >>> (7 - bit)) & 1));
+            }
+        }
+    }
+
+    // instanced variables.
+    private final OutputStream out;
+    private final byte[] buffer = new byte[RECORD_SIZE * BUFFERED_RECORDS];
+    private int count;
+    private long bytesWritten;
+
+    /**
+     * Constructor for writing to a HACK file.
+     * @param binaryFileName the name of the file to create.
+     * @throws IOException if the file can't be created.
+     */
+    public HackWriter(String binaryFileName) throws IOException {
+        this(new FileOutputStream(binaryFileName));
+    }
+
+    /**
+     * Constructor for writing to a stream, the stream is closed along with the writer.
+     * @param out the stream to write to.
+     */
+    public HackWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Adds a word to the buffer, writing the buffer out first if it is full.
+     * @param word the 16 bit machine word.
+     * @throws IOException if the buffer couldn't be written.
+     */
+    public void write(int word) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        render(word, buffer, count);
+        count += RECORD_SIZE;
+    }
+
+    /**
+     * Adds every word of an array to the buffer.
+     * @param words the machine words.
+     * @param from the index of the first word.
+     * @param to the index after the last word.
+     * @throws IOException if the buffer couldn't be written.
+     */
+    public void write(int[] words, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            write(words[i]);
+        }
+    }
+
+    /**
+     * Renders a word as a 17 byte record.
+     * @param word the 16 bit machine word.
+     * @param target the array to render into.
+     * @param offset the index of the first byte of the record.
+     */
+    public static void render(int word, byte[] target, int offset) {
+        System.arraycopy(BYTE_DIGITS, ((word >>> 8) & 0xFF) * 8, target, offset, 8);
+        System.arraycopy(BYTE_DIGITS, (word & 0xFF) * 8, target, offset + 8, 8);
+        target[offset + 16] = '\n';
+    }
+
+    /**
+     * Renders words as HACK text in memory.
+     * @param words the machine words.
+     * @param from the index of the first word.
+     * @param to the index after the last word.
+     * @return the records of the words.
+     */
+    public static byte[] toBytes(int[] words, int from, int to) {
+        byte[] text = new byte[(to - from) * RECORD_SIZE];
+        for (int i = from; i < to; i++) {
+            render(words[i], text, (i - from) * RECORD_SIZE);
+        }
+        return text;
+    }
+
+    /**
+     * Writes the buffer out and flushes the stream.
+     * @throws IOException if the buffer couldn't be written.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of bytes handed to the stream so far.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    // writes the buffered records to the stream.
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            bytesWritten += count;
+            count = 0;
+        }
+    }
+
+}
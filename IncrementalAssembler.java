@@ -0,0 +1,731 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Handles re-assembling an ASM file that has been assembled before, redoing only the work an edit calls for.
+ * Each file has a cache file holding the key of the whole source, the checksum of the output it was written to,
+ * where each region of the source was placed in that output, and a record of every region keyed by the length and
+ * checksums of its text. A record holds what linking needs, the region's labels and variables, and the region's
+ * machine words as they were last resolved, with the address each of its symbols was resolved to.
+ * 1: The source is split into regions, each starting at a label definition, and each region is keyed.
+ * 2: If the source is unchanged and the output still has its checksum, nothing else is done.
+ * 3: Regions found in the cache are loaded, only the others are parsed and encoded.
+ * 4: Labels and variables are placed exactly as the sequential first pass does, from the labels and variables of
+ *    every region, then a region is only resolved again if it is new or one of its symbols moved.
+ * 5: If the output is still the one the cache was written with, only the regions that were resolved again or moved
+ *    to another address are written into it, in place. Otherwise the whole output is written.
+ * Records are independent of where the region sits in the file, so moving, adding or removing code only parses the
+ * regions that were actually edited, and only rewrites the output from where addresses changed.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class IncrementalAssembler {
+
+    // constants, the cache file layout version, the default cache directory, the smallest region worth caching and
+    // about how many labels a region holds.
+    private static final int CACHE_MAGIC = 0x48414332;
+    private static final String DEFAULT_DIRECTORY = ".hackcache";
+    private static final String CACHE_EXTENSION = ".cache";
+    private static final int MIN_REGION_BYTES = 256;
+    private static final int LABELS_PER_REGION = 16;
+    private static final int KEY_BYTES = 12;
+
+    // the most words rendered at once when patching the output, the largest piece of a file mapped at once, and the
+    // buffer the cache is written through.
+    private static final int BATCH_WORDS = 1 << 16;
+    private static final long MAX_MAPPING = 1 << 30;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    // a region of the source, its key, and its code once parsed or loaded.
+    private static class Region {
+        final ByteBuffer text;
+        final Key key;
+        Code code;
+
+        Region(ByteBuffer text, byte[] key) {
+            this.text = text;
+            this.key = new Key(key);
+        }
+    }
+
+    /**
+     * Assembles an ASM file, reusing the cache left by the last run.
+     * @param fileName the path of the ASM file.
+     * @param options the output format, and the cache directory.
+     * @param stats filled with the time of each phase and the counters of the regions that were parsed.
+     * @return the assembled program, or null if the source and output haven't changed since the last run.
+     * @throws AssemblyException if the file can't be assembled or the output can't be written.
+     */
+    public static AssemblyResult assembleFile(String fileName, AssemblerOptions options, AssemblyStats stats) {
+        stats.begin(AssemblyStats.Phase.READ);
+        ByteBuffer input = Parser.open(fileName);
+        stats.setBytesRead(input.remaining());
+        List<Region> regions = split(input);
+        byte[] sourceKey = key(regions);
+
+        // the output can only be kept, or patched, while it is the one the cache was written with.
+        String binaryFileName = Assembler.outputFileName(fileName, options.format);
+        Path output = Paths.get(binaryFileName);
+        Path cacheFile = cacheFile(fileName, options);
+        Cache cache = Cache.read(cacheFile);
+        boolean outputKept = cache != null && cache.format == options.format && cache.outputLength == length(output)
+                             && cache.outputChecksum == checksum(output);
+        stats.end(AssemblyStats.Phase.READ);
+
+        // unchanged source, unchanged output.
+        if (outputKept && Arrays.equals(cache.sourceKey, sourceKey)) {
+            stats.setBytesWritten(0);
+            return null;
+        }
+
+        // loads every region found in the cache, parses the rest.
+        stats.begin(AssemblyStats.Phase.FIRST_PASS);
+        List<ParallelAssembler.Chunk> chunks = new ArrayList<>();
+        Set<Key> loaded = new HashSet<>();
+        Map<String, String> variables = new HashMap<>();
+        CInstructionCache instructionCache = new CInstructionCache(Assembler.MAPPER);
+        int parsed = 0;
+        for (Region region : regions) {
+            ByteBuffer record = (cache != null) ? cache.records.get(region.key) : null;
+            if (record != null) {
+                // a region is resolved in its record, regions of the same text each get their own.
+                region.code = Code.read(loaded.add(region.key) ? record : copy(record), variables);
+            } else {
+                region.code = Code.parse(region.text, instructionCache, variables, stats);
+                parsed++;
+            }
+            chunks.add(region.code.chunk);
+        }
+        stats.countCache(instructionCache);
+        stats.end(AssemblyStats.Phase.FIRST_PASS);
+
+        // places the regions, then their labels and variables, and resolves the regions whose symbols moved.
+        stats.begin(AssemblyStats.Phase.RESOLVE);
+        int address = 0;
+        int lines = 0;
+        int labels = 0;
+        for (Region region : regions) {
+            ParallelAssembler.Chunk chunk = region.code.chunk;
+            if (chunk.error != null) {
+                throw new AssemblyException(chunk.error, lines + chunk.errorLine);
+            }
+            chunk.baseAddress = address;
+            chunk.baseLine = lines;
+            address += region.code.size();
+            lines += chunk.lineCount;
+            labels += chunk.labels.size();
+        }
+        SymbolTable table = new SymbolTable(labels + variables.size());
+        List<String> diagnostics = new ArrayList<>();
+        SymbolResolver resolver = ParallelAssembler.placeSymbols(chunks, table, diagnostics);
+        int[] words = new int[address];
+        for (Region region : regions) {
+            region.code.link(table);
+            region.code.copyWords(words);
+        }
+        stats.countSymbols(table, resolver.getVariableCount());
+        stats.setSourceLines(lines);
+        stats.end(AssemblyStats.Phase.RESOLVE);
+
+        // writes the output, then the cache for the next run.
+        stats.begin(AssemblyStats.Phase.OUTPUT);
+        long written;
+        if (outputKept) {
+            written = patch(output, words, regions, cache.layout, options.format);
+        } else {
+            Assembler.secondPass(words, binaryFileName, options.format, options.parallelOutput);
+            written = length(output);
+        }
+        Cache next = new Cache(sourceKey, options.format, length(output), checksum(output));
+        for (Region region : regions) {
+            next.add(region);
+        }
+        next.write(cacheFile);
+        stats.end(AssemblyStats.Phase.OUTPUT);
+        stats.setBytesWritten(written);
+        stats.setReusedRegions(regions.size() - parsed, regions.size());
+        return new AssemblyResult(words, table, diagnostics, lines);
+    }
+
+    // writes the regions that were resolved again, or sit at another address than in the output, into the output in
+    // place, the rest of the output already holds their words. Returns the number of bytes written.
+    private static long patch(Path file, int[] words, List<Region> regions, Map<Integer, Key> layout,
+                              OutputFormat format) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            long written = 0;
+            int from = 0;
+            int to = 0;
+            for (Region region : regions) {
+                int base = region.code.chunk.baseAddress;
+                int size = region.code.size();
+                if (size == 0 || (!region.code.isChanged() && region.key.equals(layout.get(base)))) {
+                    continue;
+                }
+                // neighbouring regions are written together.
+                if (base != to) {
+                    written += writeRange(channel, words, from, to, format);
+                    from = base;
+                }
+                to = base + size;
+            }
+            written += writeRange(channel, words, from, to, format);
+            channel.truncate(offset(words.length, format));
+            if (format == OutputFormat.ROM) {
+                ByteBuffer header = RomImage.header(words, words.length);
+                written += header.remaining();
+                writeFully(channel, header, 0);
+            }
+            return written;
+        } catch (IOException e) {
+            throw new AssemblyException("Could not write " + file, e);
+        }
+    }
+
+    // renders a range of words in the output format and writes it where it belongs in the output.
+    private static long writeRange(FileChannel channel, int[] words, int from, int to, OutputFormat format)
+        throws IOException {
+        long written = 0;
+        for (int i = from; i < to; i += BATCH_WORDS) {
+            int end = Math.min(to, i + BATCH_WORDS);
+            ByteBuffer bytes;
+            if (format == OutputFormat.HACK) {
+                bytes = ByteBuffer.wrap(HackWriter.toBytes(words, i, end));
+            } else {
+                bytes = ByteBuffer.allocate((end - i) * 2);
+                for (int j = i; j < end; j++) {
+                    bytes.putShort((short) words[j]);
+                }
+                bytes.flip();
+            }
+            written += bytes.remaining();
+            writeFully(channel, bytes, offset(i, format));
+        }
+        return written;
+    }
+
+    // the position of a ROM address in the output.
+    private static long offset(int address, OutputFormat format) {
+        switch (format) {
+            case HACK:
+                return (long) address * HackWriter.RECORD_SIZE;
+            case ROM:
+                return RomImage.HEADER_SIZE + (long) address * 2;
+            default:
+                return (long) address * 2;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // the size of a file, -1 if there is none.
+    private static long length(Path file) {
+        try {
+            return Files.isRegularFile(file) ? Files.size(file) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // the CRC32C of a file, -1 if it can't be read. Tells if the output was changed or replaced since the cache was
+    // written, for the price of reading it.
+    private static long checksum(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32C checksum = new CRC32C();
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAX_MAPPING) {
+                checksum.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                            Math.min(MAX_MAPPING, size - position)));
+            }
+            return checksum.getValue();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // the cache file of an ASM file, in the cache directory given with --incremental= or next to the file.
+    private static Path cacheFile(String fileName, AssemblerOptions options) {
+        Path source = Paths.get(fileName).toAbsolutePath().normalize();
+        Path directory = (options.cacheDirectory != null) ? Paths.get(options.cacheDirectory)
+                                                          : source.getParent().resolve(DEFAULT_DIRECTORY);
+        String name = source.getFileName().toString();
+        if (options.cacheDirectory != null) {
+            // a shared directory may hold files of the same name from many directories.
+            byte[] path = source.toString().getBytes(StandardCharsets.UTF_8);
+            name = name + "-" + toHex(key(path, 0, path.length, new CRC32C(), new CRC32())).substring(8);
+        }
+        return directory.resolve(name + CACHE_EXTENSION);
+    }
+
+    // splits the input into regions that start at the beginning of a label line, of at least MIN_REGION_BYTES.
+    // A region is only cut at a label whose name hashes to a multiple of LABELS_PER_REGION, so where regions start
+    // depends on the labels themselves and not on where the last region started: after an edit, the regions line up
+    // with the regions of the last run again at the next such label. The input is scanned as an array, which is
+    // copied once, mapped files are slow to read a byte at a time.
+    private static List<Region> split(ByteBuffer input) {
+        byte[] text = new byte[input.remaining()];
+        input.duplicate().get(text);
+        CRC32C crc32c = new CRC32C();
+        CRC32 crc32 = new CRC32();
+        int size = text.length;
+        List<Region> regions = new ArrayList<>();
+        int start = 0;
+        int from = MIN_REGION_BYTES;
+        while (from < size) {
+            if (text[from] != '(') {
+                from++;
+                continue;
+            }
+
+            // a label if nothing but blanks comes before it on its line.
+            int lineStart = from;
+            while (lineStart > start && text[lineStart - 1] != '\n' && text[lineStart - 1] <= ' '
+                   && text[lineStart - 1] >= 0) {
+                lineStart--;
+            }
+            if (lineStart > start && text[lineStart - 1] == '\n' && isCut(text, from + 1)) {
+                regions.add(region(text, start, lineStart, crc32c, crc32));
+                start = lineStart;
+                from = Math.max(from + 1, start + MIN_REGION_BYTES);
+            } else {
+                from++;
+            }
+        }
+        if (start < size || regions.isEmpty()) {
+            regions.add(region(text, start, size, crc32c, crc32));
+        }
+        return regions;
+    }
+
+    // checks if the label name starting at from is one that regions are cut at.
+    private static boolean isCut(byte[] text, int from) {
+        int hash = 0;
+        for (int i = from; i < text.length && text[i] != ')' && text[i] != '\n'; i++) {
+            hash = hash * 31 + text[i];
+        }
+        return ((hash ^ (hash >>> 16)) * 0x9E3779B1 >>> 16) % LABELS_PER_REGION == 0;
+    }
+
+    // keys a region by its length and the CRC32C and CRC32 of its text. Two texts of the same length only share a
+    // key if their difference is a multiple of both polynomials, a 64 bit check where a digest would cost ten times
+    // as much to compute over the whole source on every run.
+    private static Region region(byte[] text, int start, int end, CRC32C crc32c, CRC32 crc32) {
+        return new Region(ByteBuffer.wrap(text, start, end - start).slice(), key(text, start, end, crc32c, crc32));
+    }
+
+    private static byte[] key(byte[] bytes, int start, int end, CRC32C crc32c, CRC32 crc32) {
+        crc32c.reset();
+        crc32c.update(bytes, start, end - start);
+        crc32.reset();
+        crc32.update(bytes, start, end - start);
+        return ByteBuffer.allocate(KEY_BYTES).putInt(end - start).putInt((int) crc32c.getValue())
+                         .putInt((int) crc32.getValue()).array();
+    }
+
+    // the key of the whole source, the key of the keys of its regions.
+    private static byte[] key(List<Region> regions) {
+        byte[] keys = new byte[regions.size() * KEY_BYTES];
+        for (int i = 0; i < regions.size(); i++) {
+            System.arraycopy(regions.get(i).key.bytes, 0, keys, i * KEY_BYTES, KEY_BYTES);
+        }
+        return key(keys, 0, keys.length, new CRC32C(), new CRC32());
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /*
+    region records, the code of a region wherever it is placed: its line count and size, its labels with their
+    addresses in the region, the symbols its A instructions load with the address each was last resolved to, its
+    variables, where each symbol is loaded, and its 16 bit machine words, as ints, shorts and length prefixed ASCII
+    symbols.
+     */
+
+    // the code of one region, a view of its record. The chunk holds the labels and variables placing needs, and the
+    // addresses and words are resolved in the record itself, so a record is written back to the cache as it is.
+    private static class Code {
+        final ParallelAssembler.Chunk chunk;
+        final ByteBuffer record;
+        private final byte[] bytes;
+        private int size;
+        // where each symbol starts in the record's array, at its length, where the relocations and the words start,
+        // and the number of relocations, the instruction, symbol and source line of every symbolic A instruction.
+        private int[] symbols = new int[0];
+        private int relocations;
+        private int relocationCount;
+        private int words;
+        // if the code was parsed or resolved again since its record was read.
+        private boolean changed;
+
+        Code(ParallelAssembler.Chunk chunk, ByteBuffer record) {
+            this.chunk = chunk;
+            this.record = record;
+            this.bytes = (record != null) ? record.array() : null;
+        }
+
+        // parses the text of a region into a record, the words of symbolic A instructions are left for link. The
+        // regions parsed in one run share a cache of C instructions, which the caller counts.
+        static Code parse(ByteBuffer text, CInstructionCache instructionCache, Map<String, String> variables,
+                          AssemblyStats stats) {
+            ParallelAssembler.Chunk chunk = new ParallelAssembler.Chunk(text);
+            chunk.parse(instructionCache);
+            stats.add(chunk.stats);
+            if (chunk.error != null) {
+                Code code = new Code(chunk, null);
+                code.changed = true;
+                return code;
+            }
+            InstructionList instructions = chunk.instructions;
+            Map<String, Integer> ids = new HashMap<>();
+            List<String> symbols = new ArrayList<>();
+            int[] relocations = new int[instructions.size() * 3];
+            int count = 0;
+            int[] words = new int[instructions.size()];
+            for (int i = 0; i < instructions.size(); i++) {
+                if (instructions.isResolved(i)) {
+                    words[i] = instructions.getWord(i);
+                    continue;
+                }
+                String symbol = instructions.getSymbol(i);
+                Integer id = ids.get(symbol);
+                if (id == null) {
+                    id = symbols.size();
+                    ids.put(symbol, id);
+                    symbols.add(symbol);
+                }
+                relocations[count++] = i;
+                relocations[count++] = id;
+                relocations[count++] = instructions.getLineNumber(i);
+            }
+
+            RecordWriter out = new RecordWriter(32 + words.length * 2 + count * 4 + symbols.size() * 16);
+            out.putInt(chunk.lineCount);
+            out.putInt(words.length);
+            out.putInt(chunk.labels.size());
+            for (ParallelAssembler.Label label : chunk.labels) {
+                out.putSymbol(label.name);
+                out.putInt(label.address);
+                out.putInt(label.lineNumber);
+            }
+            out.putInt(symbols.size());
+            for (String symbol : symbols) {
+                out.putSymbol(symbol);
+                out.putInt(SymbolTable.NOT_FOUND);
+            }
+            out.putInt(chunk.variables.size());
+            for (String variable : chunk.variables) {
+                out.putInt(ids.get(variable));
+            }
+            out.putInt(count);
+            out.putInts(Arrays.copyOf(relocations, count));
+            out.putShorts(words);
+            Code code = read(out.toBuffer(), variables);
+            code.changed = true;
+            return code;
+        }
+
+        // reads the layout of a record, only the labels and variables are made into Strings. Most regions use the
+        // same few variables, which share one String from variables.
+        static Code read(ByteBuffer record, Map<String, String> variables) {
+            Code code = new Code(new ParallelAssembler.Chunk(null, 0), record);
+            int position = record.arrayOffset() + record.position();
+            code.chunk.lineCount = code.getInt(position);
+            code.size = code.getInt(position + 4);
+            int labels = code.getInt(position + 8);
+            position += 12;
+            for (int i = 0; i < labels; i++) {
+                int end = position + 2 + code.getLength(position);
+                code.chunk.labels.add(new ParallelAssembler.Label(code.getString(position), code.getInt(end),
+                                                                  code.getInt(end + 4)));
+                position = end + 8;
+            }
+            code.symbols = new int[code.getInt(position)];
+            position += 4;
+            for (int i = 0; i < code.symbols.length; i++) {
+                code.symbols[i] = position;
+                position += 2 + code.getLength(position) + 4;
+            }
+            int count = code.getInt(position);
+            position += 4;
+            for (int i = 0; i < count; i++, position += 4) {
+                String variable = code.getString(code.symbols[code.getInt(position)]);
+                String known = variables.putIfAbsent(variable, variable);
+                code.chunk.variables.add((known != null) ? known : variable);
+            }
+            code.relocationCount = code.getInt(position) / 3;
+            code.relocations = position + 4;
+            code.words = code.relocations + code.relocationCount * 12;
+            return code;
+        }
+
+        // resolves the symbolic A instructions against the finished table, unless the code was read and none of
+        // its symbols moved since. The first symbol that isn't in the table is an undefined label.
+        void link(SymbolTable table) {
+            boolean moved = changed;
+            for (int symbol : symbols) {
+                int start = symbol + 2;
+                int end = start + getLength(symbol);
+                int address = table.get(bytes, start, end);
+                if (address != getInt(end)) {
+                    putInt(end, address);
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                return;
+            }
+            changed = true;
+            for (int i = 0; i < relocationCount; i++) {
+                int relocation = relocations + i * 12;
+                int symbol = symbols[getInt(relocation + 4)];
+                int address = getInt(symbol + 2 + getLength(symbol));
+                int lineNumber = chunk.baseLine + getInt(relocation + 8);
+                if (address == SymbolTable.NOT_FOUND) {
+                    throw new AssemblyException("Undefined label " + getString(symbol), lineNumber);
+                }
+                int word = CInstructionMapper.encodeAddress(address, lineNumber);
+                int position = words + getInt(relocation) * 2;
+                bytes[position] = (byte) (word >>> 8);
+                bytes[position + 1] = (byte) word;
+            }
+        }
+
+        // copies the words into the program at the code's address.
+        void copyWords(int[] program) {
+            int position = words;
+            for (int i = chunk.baseAddress; i < chunk.baseAddress + size; i++, position += 2) {
+                program[i] = (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+            }
+        }
+
+        // the length prefixed symbol at a position, and its length.
+        private String getString(int position) {
+            return new String(bytes, position + 2, getLength(position), StandardCharsets.ISO_8859_1);
+        }
+
+        private int getLength(int position) {
+            return (bytes[position] & 0xFF) << 8 | (bytes[position + 1] & 0xFF);
+        }
+
+        private int getInt(int position) {
+            return bytes[position] << 24 | (bytes[position + 1] & 0xFF) << 16 | (bytes[position + 2] & 0xFF) << 8
+                   | (bytes[position + 3] & 0xFF);
+        }
+
+        private void putInt(int position, int value) {
+            bytes[position] = (byte) (value >>> 24);
+            bytes[position + 1] = (byte) (value >>> 16);
+            bytes[position + 2] = (byte) (value >>> 8);
+            bytes[position + 3] = (byte) value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isChanged() {
+            return changed;
+        }
+    }
+
+    private static ByteBuffer copy(ByteBuffer record) {
+        byte[] bytes = new byte[record.remaining()];
+        record.duplicate().get(bytes);
+        return ByteBuffer.wrap(bytes);
+    }
+
+    // builds a chunk record in a growing array.
+    private static class RecordWriter {
+        private byte[] bytes;
+        private int size;
+
+        RecordWriter(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void putInt(int value) {
+            ensure(4);
+            bytes[size++] = (byte) (value >>> 24);
+            bytes[size++] = (byte) (value >>> 16);
+            bytes[size++] = (byte) (value >>> 8);
+            bytes[size++] = (byte) value;
+        }
+
+        void putInts(int[] values) {
+            ensure(values.length * 4);
+            for (int value : values) {
+                bytes[size++] = (byte) (value >>> 24);
+                bytes[size++] = (byte) (value >>> 16);
+                bytes[size++] = (byte) (value >>> 8);
+                bytes[size++] = (byte) value;
+            }
+        }
+
+        void putShorts(int[] values) {
+            ensure(values.length * 2);
+            for (int value : values) {
+                bytes[size++] = (byte) (value >>> 8);
+                bytes[size++] = (byte) value;
+            }
+        }
+
+        void putSymbol(String symbol) {
+            ensure(2 + symbol.length());
+            bytes[size++] = (byte) (symbol.length() >>> 8);
+            bytes[size++] = (byte) symbol.length();
+            for (int i = 0; i < symbol.length(); i++) {
+                bytes[size++] = (byte) symbol.charAt(i);
+            }
+        }
+
+        ByteBuffer toBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size).slice();
+        }
+
+        private void ensure(int more) {
+            if (size + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+            }
+        }
+    }
+
+    // a region key, usable as a map key.
+    private static class Key {
+        final byte[] bytes;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(bytes, ((Key) other).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(bytes);
+        }
+    }
+
+    // the cache file of one ASM file: the output it was written with, where each region was placed in it, and the
+    // region records, which are slices of the file's bytes.
+    private static class Cache {
+        final byte[] sourceKey;
+        final OutputFormat format;
+        final long outputLength;
+        final long outputChecksum;
+        final Map<Integer, Key> layout = new HashMap<>();
+        final Map<Key, ByteBuffer> records = new HashMap<>();
+
+        Cache(byte[] sourceKey, OutputFormat format, long outputLength, long outputChecksum) {
+            this.sourceKey = sourceKey;
+            this.format = format;
+            this.outputLength = outputLength;
+            this.outputChecksum = outputChecksum;
+        }
+
+        // adds a placed region, regions of the same text share their record.
+        void add(Region region) {
+            if (region.code.size() > 0) {
+                layout.put(region.code.chunk.baseAddress, region.key);
+            }
+            if (!records.containsKey(region.key)) {
+                records.put(region.key, region.code.record);
+            }
+        }
+
+        // reads a cache file, null if there is none or it can't be read, a bad cache only costs a full assembly.
+        static Cache read(Path file) {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            try {
+                ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+                if (in.getInt() != CACHE_MAGIC) {
+                    return null;
+                }
+                byte[] sourceKey = new byte[KEY_BYTES];
+                in.get(sourceKey);
+                OutputFormat format = OutputFormat.values()[in.get()];
+                Cache cache = new Cache(sourceKey, format, in.getLong(), in.getLong());
+                int placed = in.getInt();
+                for (int i = 0; i < placed; i++) {
+                    int address = in.getInt();
+                    byte[] key = new byte[KEY_BYTES];
+                    in.get(key);
+                    cache.layout.put(address, new Key(key));
+                }
+                int count = in.getInt();
+                for (int i = 0; i < count; i++) {
+                    byte[] key = new byte[KEY_BYTES];
+                    in.get(key);
+                    int length = in.getInt();
+                    cache.records.put(new Key(key), in.slice().limit(length));
+                    in.position(in.position() + length);
+                }
+                return cache;
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+
+        // writes the cache file through a temporary file, so a cache is never left half written.
+        void write(Path file) {
+            try {
+                Files.createDirectories(file.getParent());
+                Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+                try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary), WRITE_BUFFER_BYTES))) {
+                    out.writeInt(CACHE_MAGIC);
+                    out.write(sourceKey);
+                    out.writeByte(format.ordinal());
+                    out.writeLong(outputLength);
+                    out.writeLong(outputChecksum);
+                    out.writeInt(layout.size());
+                    for (Map.Entry<Integer, Key> placed : layout.entrySet()) {
+                        out.writeInt(placed.getKey());
+                        out.write(placed.getValue().bytes);
+                    }
+                    out.writeInt(records.size());
+                    for (Map.Entry<Key, ByteBuffer> record : records.entrySet()) {
+                        ByteBuffer bytes = record.getValue();
+                        out.write(record.getKey().bytes);
+                        out.writeInt(bytes.remaining());
+                        out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+                    }
+                }
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("Could not write the assembly cache " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+import java.util.Arrays;
+
+/**
+ * Holds the instructions produced by the first pass of the assembler, one record per ROM address.
+ * Each record is the kind of the instruction, its encoded machine word, the symbol it was written with (symbolic A
+ * instructions only) and the source line it came from. Records are kept in parallel arrays that grow by doubling, so
+ * adding an instruction doesn't allocate once the list has grown to the size of the program.
+ *
+ * An A instruction waiting on a label that hasn't been defined yet holds a link to the previous instruction waiting
+ * on the same label instead of a word. The links form a fix-up chain which is patched in one walk once the label is
+ * known.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class InstructionList {
+
+    // constants, the end of a fix-up chain and the starting capacity.
+    public static final int NO_FIX_UP = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // instanced variables.
+    private Command[] kinds;
+    private int[]     words;
+    private String[]  symbols;
+    private int[]     lineNumbers;
+    private int       size;
+
+    /**
+     * Constructor for an empty list.
+     * post: a list with room for INITIAL_CAPACITY instructions.
+     */
+    public InstructionList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for an empty list of a known size, such as a small part of a program.
+     * post: a list with room for capacity instructions, at least one.
+     * @param capacity the number of instructions to make room for.
+     */
+    public InstructionList(int capacity) {
+        int size = Math.max(1, capacity);
+        kinds = new Command[size];
+        words = new int[size];
+        symbols = new String[size];
+        lineNumbers = new int[size];
+    }
+
+    /**
+     * Adds a resolved instruction to the end of the list.
+     * @param kind the kind of instruction, A or C.
+     * @param word the encoded machine word.
+     * @param symbol the symbol of an A instruction, or null.
+     * @param lineNumber the source line number of the instruction.
+     * @return the index, or ROM address, of the instruction.
+     */
+    public int add(Command kind, int word, String symbol, int lineNumber) {
+        if (size == words.length) {
+            grow();
+        }
+        kinds[size] = kind;
+        words[size] = word;
+        symbols[size] = symbol;
+        lineNumbers[size] = lineNumber;
+        return size++;
+    }
+
+    /**
+     * Adds an A instruction whose label isn't defined yet, linking it onto the label's fix-up chain.
+     * @param symbol the label.
+     * @param lineNumber the source line number of the instruction.
+     * @param previous the index of the last instruction waiting on the same label, or NO_FIX_UP.
+     * @return the index of the instruction, the new end of the chain.
+     */
+    public int addUnresolved(String symbol, int lineNumber, int previous) {
+        return add(Command.A_COMMAND, -2 - previous, symbol, lineNumber);
+    }
+
+    /**
+     * Patches every instruction on a fix-up chain with the resolved word.
+     * @param last the index of the last instruction on the chain.
+     * @param word the encoded machine word for the label.
+     */
+    public void resolve(int last, int word) {
+        int index = last;
+        while (index != NO_FIX_UP) {
+            int previous = -2 - words[index];
+            words[index] = word;
+            index = previous;
+        }
+    }
+
+    /**
+     * Replaces the machine word of an instruction.
+     * @param index the index of the instruction.
+     * @param word the encoded machine word.
+     */
+    public void setWord(int index, int word) {
+        words[index] = word;
+    }
+
+    /**
+     * Adds every instruction of another list to the end of this one.
+     * @param other the list to copy from.
+     * @param lineOffset added to the line number of every copied instruction.
+     */
+    public void addAll(InstructionList other, int lineOffset) {
+        while (words.length < size + other.size) {
+            grow();
+        }
+        System.arraycopy(other.kinds, 0, kinds, size, other.size);
+        System.arraycopy(other.words, 0, words, size, other.size);
+        System.arraycopy(other.symbols, 0, symbols, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            lineNumbers[size + i] = other.lineNumbers[i] + lineOffset;
+        }
+        size += other.size;
+    }
+
+    /**
+     * Removes instructions in place, keeping the order of the rest.
+     * @param removed true for every index to remove, at least size() long.
+     * @return the new index of every old index, with one more entry for the end of the list, so labels can be moved.
+     */
+    public int[] remove(boolean[] removed) {
+        int[] newIndex = new int[size + 1];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            newIndex[i] = kept;
+            if (!removed[i]) {
+                kinds[kept] = kinds[i];
+                words[kept] = words[i];
+                symbols[kept] = symbols[i];
+                lineNumbers[kept] = lineNumbers[i];
+                kept++;
+            }
+        }
+        newIndex[size] = kept;
+        Arrays.fill(symbols, kept, size, null);
+        size = kept;
+        return newIndex;
+    }
+
+    /**
+     * Walks a fix-up chain back to the first instruction waiting on the label.
+     * @param last the index of the last instruction on the chain.
+     * @return the index of the first instruction on the chain.
+     */
+    public int firstOnChain(int last) {
+        int index = last;
+        while (-2 - words[index] != NO_FIX_UP) {
+            index = -2 - words[index];
+        }
+        return index;
+    }
+
+    /**
+     * @param index the index of the instruction.
+     * @return true if the instruction has its machine word.
+     */
+    public boolean isResolved(int index) {
+        return words[index] >= 0;
+    }
+
+    /**
+     * @return a copy of the machine words, one per ROM address.
+     */
+    public int[] toWordArray() {
+        return Arrays.copyOf(words, size);
+    }
+
+    // doubles the capacity of every column.
+    private void grow() {
+        int capacity = words.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        words = Arrays.copyOf(words, capacity);
+        symbols = Arrays.copyOf(symbols, capacity);
+        lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+    }
+
+    /*
+    getters
+     */
+
+    public int size() {
+        return size;
+    }
+
+    public Command getKind(int index) {
+        return kinds[index];
+    }
+
+    public int getWord(int index) {
+        return words[index];
+    }
+
+    public String getSymbol(int index) {
+        return symbols[index];
+    }
+
+    public int getLineNumber(int index) {
+        return lineNumbers[index];
+    }
+
+}
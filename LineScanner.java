@@ -0,0 +1,57 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the parts of a line that Parser cares about inside of an input buffer of ASCII bytes:
+ * where the line ends, where the code starts after any indentation, and where a comment starts.
+ * Parser uses the best scanner available: the vector scanner when it was built from the vector/ source root and the
+ * jdk.incubator.vector module is present, the scalar scanner otherwise.
+ * Every scanner must return exactly the same indexes.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public interface LineScanner {
+
+    /**
+     * Finds the end of the line starting at from.
+     * @param input the input buffer.
+     * @param from the index to start scanning at.
+     * @param limit the index to stop scanning at.
+     * @return the index of the next newline, or limit if there is none.
+     */
+    int lineEnd(ByteBuffer input, int from, int limit);
+
+    /**
+     * Skips blank bytes, anything at or below a space.
+     * @param input the input buffer.
+     * @param from the index to start scanning at.
+     * @param limit the index to stop scanning at.
+     * @return the index of the first non-blank byte, or limit if there is none.
+     */
+    int skipBlanks(ByteBuffer input, int from, int limit);
+
+    /**
+     * Finds the start of a // comment.
+     * @param input the input buffer.
+     * @param from the index to start scanning at.
+     * @param limit the index to stop scanning at, a comment must start before limit - 1.
+     * @return the index of the first / of the comment, or limit if there is none.
+     */
+    int commentStart(ByteBuffer input, int from, int limit);
+
+    /**
+     * Picks the scanner to use. The vector scanner is used when it can be loaded, unless the system property
+     * hack.lexer is set to scalar.
+     * @return the best scanner available.
+     */
+    static LineScanner best() {
+        if (!"scalar".equals(System.getProperty("hack.lexer"))) {
+            try {
+                return (LineScanner) Class.forName("VectorLineScanner").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // the jdk.incubator.vector module isn't available, falls back to the scalar scanner.
+            }
+        }
+        return new ScalarLineScanner();
+    }
+
+}
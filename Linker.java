@@ -0,0 +1,186 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Handles linking relocatable modules into one program, see ObjectModule.
+ * 1: Each module is given its ROM base, the number of words of every module before it.
+ * 2: Every exported label is placed in the symbolTable in module order, the first definition of a label wins.
+ * 3: Variables are allocated from RAM 16 in module order, each module's in the order it first referenced them.
+ * 4: The words of every module are copied to its base and every relocation is patched.
+ * Linking modules gives exactly the words of assembling their ASM files joined end to end, in one linear pass over
+ * the packed modules. Modules can be assembled once with --object, in parallel, and only relinked when another
+ * module changes.
+ *
+ * Usage: java Assembler --link=program.hack [--format=hack|raw|rom] module.hobj|module.asm ...
+ * ASM files are assembled into modules in memory on one thread per core, .hobj files are read as they are.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class Linker {
+
+    /**
+     * Links modules into one program.
+     * @param modules the modules, in ROM order.
+     * @param stats filled with the time spent linking and the symbols of the program.
+     * @return the machine words, symbols and diagnostics of the program.
+     * @throws AssemblyException if a label is referenced but never defined.
+     */
+    public static AssemblyResult link(List<ObjectModule> modules, AssemblyStats stats) {
+        stats.begin(AssemblyStats.Phase.RESOLVE);
+
+        // bases, and every label.
+        SymbolTable table = new SymbolTable();
+        List<String> diagnostics = new ArrayList<>();
+        int[] bases = new int[modules.size()];
+        int size = 0;
+        int lines = 0;
+        for (int m = 0; m < modules.size(); m++) {
+            ObjectModule module = modules.get(m);
+            bases[m] = size;
+            String[] symbols = module.getSymbols();
+            int[] exportSymbols = module.getExportSymbols();
+            int[] exportAddresses = module.getExportAddresses();
+            for (int i = 0; i < exportSymbols.length; i++) {
+                String label = symbols[exportSymbols[i]];
+                if (table.getOrInsert(label, size + exportAddresses[i]) != SymbolTable.NOT_FOUND) {
+                    diagnostics.add("Symbol " + label + " at line " + module.getExportLines()[i] + " of "
+                                    + module.getName() + " is already defined, keeping the first definition");
+                }
+            }
+            size += module.getWords().length;
+            lines += module.getLineCount();
+        }
+
+        // variables, then the words of each module patched in place.
+        InstructionList instructions = new InstructionList(size);
+        int currentVariableValue = 16;
+        for (int m = 0; m < modules.size(); m++) {
+            ObjectModule module = modules.get(m);
+            String[] symbols = module.getSymbols();
+            byte[] kinds = module.getKinds();
+            int[] addresses = new int[symbols.length];
+            for (int s = 0; s < symbols.length; s++) {
+                if (kinds[s] == ObjectModule.VARIABLE) {
+                    addresses[s] = table.getOrInsert(symbols[s], currentVariableValue);
+                    if (addresses[s] == SymbolTable.NOT_FOUND) {
+                        addresses[s] = currentVariableValue++;
+                    }
+                } else {
+                    addresses[s] = table.get(symbols[s]);
+                }
+            }
+
+            int[] words = module.getWords();
+            int[] relocationAddresses = module.getRelocationAddresses();
+            int[] relocationSymbols = module.getRelocationSymbols();
+            int r = 0;
+            for (int i = 0; i < words.length; i++) {
+                if (r < relocationAddresses.length && relocationAddresses[r] == i) {
+                    int symbol = relocationSymbols[r];
+                    if (addresses[symbol] == SymbolTable.NOT_FOUND) {
+                        throw new AssemblyException("Undefined label " + symbols[symbol] + " in " + module.getName(),
+                                                    module.getRelocationLines()[r]);
+                    }
+                    int word = CInstructionMapper.encodeAddress(addresses[symbol], module.getRelocationLines()[r]);
+                    instructions.add(Command.A_COMMAND, word, symbols[symbol], 0);
+                    r++;
+                } else {
+                    Command kind = ((words[i] & 0x8000) != 0) ? Command.C_COMMAND : Command.A_COMMAND;
+                    instructions.add(kind, words[i], null, 0);
+                }
+            }
+            if (r != relocationAddresses.length) {
+                throw new AssemblyException("Relocations out of order in " + module.getName());
+            }
+        }
+
+        stats.end(AssemblyStats.Phase.RESOLVE);
+        stats.countSymbols(table, currentVariableValue - 16);
+        stats.setSourceLines(lines);
+        return new AssemblyResult(instructions, table.toMap(), diagnostics, lines);
+    }
+
+    /**
+     * Links the modules named by the arguments and writes the program, printing any diagnostics and errors.
+     * @param inputs .hobj modules and ASM files, in ROM order.
+     * @param options the output file given with --link=, its format, and --stats.
+     * @return true if the program was linked and written.
+     */
+    public static boolean run(List<String> inputs, AssemblerOptions options) {
+        if (inputs.isEmpty()) {
+            System.err.println("No modules to link.");
+            return false;
+        }
+        long startTime = System.nanoTime();
+        AssemblyStats stats = new AssemblyStats(options.stats, options.linkFile);
+        try {
+            stats.begin(AssemblyStats.Phase.READ);
+            List<ObjectModule> modules = load(inputs);
+            stats.end(AssemblyStats.Phase.READ);
+
+            AssemblyResult result = link(modules, stats);
+            for (String diagnostic : result.getDiagnostics()) {
+                System.out.println("Warning: " + diagnostic);
+            }
+
+            stats.begin(AssemblyStats.Phase.OUTPUT);
+            Assembler.secondPass(result.getWords(), options.linkFile, options.format, options.parallelOutput);
+            stats.end(AssemblyStats.Phase.OUTPUT);
+            System.out.printf("Linked %d modules into %s: %d instructions in %d MS%n", modules.size(),
+                              options.linkFile, result.size(), (System.nanoTime() - startTime) / 1000000);
+        } catch (AssemblyException e) {
+            System.err.println("Error: " + e.getMessage());
+            return false;
+        }
+        if (options.stats) {
+            Assembler.report(stats.toJson(options.linkFile), options);
+        }
+        return true;
+    }
+
+    // reads every .hobj module and assembles every ASM file, on one thread per core, keeping the given order.
+    private static List<ObjectModule> load(List<String> inputs) {
+        ExecutorService pool = Executors.newFixedThreadPool(
+            Math.min(inputs.size(), Runtime.getRuntime().availableProcessors()));
+        try {
+            List<Future<ObjectModule>> jobs = new ArrayList<>();
+            for (String input : inputs) {
+                jobs.add(pool.submit(() -> load(input)));
+            }
+            List<ObjectModule> modules = new ArrayList<>();
+            for (Future<ObjectModule> job : jobs) {
+                modules.add(job.get());
+            }
+            return modules;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssemblyException("Interrupted while loading modules.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AssemblyException("Could not load modules.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static ObjectModule load(String input) {
+        Path path = Paths.get(input);
+        if (input.endsWith(ObjectModule.EXTENSION)) {
+            return ObjectModule.read(path);
+        }
+        try {
+            return ObjectModule.compile(input, Parser.open(input));
+        } catch (AssemblyException e) {
+            throw new AssemblyException(input + ": " + e.getMessage(), e);
+        }
+    }
+
+}
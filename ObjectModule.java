@@ -0,0 +1,357 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds one relocatable module, an ASM file assembled on its own so it can be cached and linked with others by
+ * Linker. A module has three parts:
+ * 1: its encoded words, numbers, predefined symbols and C instructions are final, relocated words hold 0.
+ * 2: its exports, every label it defines with the module address it points to.
+ * 3: its relocations, every A instruction naming a label or a variable, with the symbol it names.
+ * Symbols are kept once in a table of names and kinds, in the order they are first referenced, so the linker can
+ * allocate variables in the same order as a sequential first pass.
+ *
+ * The .hobj file is the parts packed as big endian ints, with 16 bit words and length prefixed ASCII symbols:
+ *   header:      magic "HOBJ", version, line count, word count, symbol count, export count, relocation count.
+ *   symbols:     kind byte, length, name.
+ *   words:       one 16 bit word per instruction.
+ *   exports:     symbol, module address, source line.
+ *   relocations: module address, symbol, source line, in increasing address order.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class ObjectModule {
+
+    // constants, the file layout and the kinds of symbol.
+    public static final int MAGIC = ('H' << 24) | ('O' << 16) | ('B' << 8) | 'J';
+    public static final String EXTENSION = ".hobj";
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    static final byte LABEL = 0;
+    static final byte VARIABLE = 1;
+
+    // instanced variables, the exports and relocations are parallel arrays.
+    private final String name;
+    private final int lineCount;
+    private final int[] words;
+    private final String[] symbols;
+    private final byte[] kinds;
+    private final int[] exportSymbols;
+    private final int[] exportAddresses;
+    private final int[] exportLines;
+    private final int[] relocationAddresses;
+    private final int[] relocationSymbols;
+    private final int[] relocationLines;
+
+    private ObjectModule(String name, int lineCount, int[] words, String[] symbols, byte[] kinds,
+                         int[] exportSymbols, int[] exportAddresses, int[] exportLines,
+                         int[] relocationAddresses, int[] relocationSymbols, int[] relocationLines) {
+        this.name = name;
+        this.lineCount = lineCount;
+        this.words = words;
+        this.symbols = symbols;
+        this.kinds = kinds;
+        this.exportSymbols = exportSymbols;
+        this.exportAddresses = exportAddresses;
+        this.exportLines = exportLines;
+        this.relocationAddresses = relocationAddresses;
+        this.relocationSymbols = relocationSymbols;
+        this.relocationLines = relocationLines;
+    }
+
+    /**
+     * Assembles ASM text into a module, with the same checks as Assembler's first pass.
+     * @param name the name of the module, used in messages.
+     * @param input the ASM text.
+     * @return the module.
+     * @throws AssemblyException if the text can't be assembled.
+     */
+    public static ObjectModule compile(String name, ByteBuffer input) {
+        return fromChunk(name, parse(input));
+    }
+
+    /**
+     * Assembles an ASM file into a module, written next to it as a .hobj file.
+     * @param fileName the path of the ASM file.
+     * @param stats filled with the counters of the file.
+     * @return the module as an unlinked program, relocated words are 0 and only its own labels are in the symbols.
+     * @throws AssemblyException if the file can't be assembled or the module can't be written.
+     */
+    static AssemblyResult assembleFile(String fileName, AssemblyStats stats) {
+        stats.begin(AssemblyStats.Phase.READ);
+        ByteBuffer input = Parser.open(fileName);
+        stats.end(AssemblyStats.Phase.READ);
+        stats.setBytesRead(input.remaining());
+
+        stats.begin(AssemblyStats.Phase.FIRST_PASS);
+        ParallelAssembler.Chunk chunk = parse(input);
+        ObjectModule module = fromChunk(fileName, chunk);
+        stats.end(AssemblyStats.Phase.FIRST_PASS);
+        stats.add(chunk.stats);
+        stats.setSourceLines(chunk.lineCount);
+
+        stats.begin(AssemblyStats.Phase.OUTPUT);
+        Path objectFile = Paths.get(Assembler.outputFileName(fileName, EXTENSION));
+        module.write(objectFile);
+        stats.end(AssemblyStats.Phase.OUTPUT);
+        stats.setBytesWritten(module.size());
+
+        InstructionList instructions = new InstructionList(module.words.length);
+        for (int i = 0; i < module.words.length; i++) {
+            instructions.add(chunk.instructions.getKind(i), module.words[i], chunk.instructions.getSymbol(i),
+                             chunk.instructions.getLineNumber(i));
+        }
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < module.exportSymbols.length; i++) {
+            labels.putIfAbsent(module.symbols[module.exportSymbols[i]], module.exportAddresses[i]);
+        }
+        return new AssemblyResult(instructions, labels, new ArrayList<>(), chunk.lineCount);
+    }
+
+    // parses ASM text as one chunk, symbolic A instructions are left unresolved.
+    private static ParallelAssembler.Chunk parse(ByteBuffer input) {
+        ParallelAssembler.Chunk chunk = new ParallelAssembler.Chunk(input);
+        chunk.parse();
+        if (chunk.error != null) {
+            throw new AssemblyException(chunk.error, chunk.errorLine);
+        }
+        return chunk;
+    }
+
+    // builds a module from a parsed chunk, predefined symbols are resolved and every other symbol is relocated.
+    private static ObjectModule fromChunk(String name, ParallelAssembler.Chunk chunk) {
+        InstructionList instructions = chunk.instructions;
+        SymbolTable predefined = new SymbolTable();
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> symbols = new ArrayList<>();
+        int[] words = new int[instructions.size()];
+        int relocations = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (instructions.isResolved(i)) {
+                words[i] = instructions.getWord(i);
+            } else {
+                String symbol = instructions.getSymbol(i);
+                int address = predefined.get(symbol);
+                if (address != SymbolTable.NOT_FOUND) {
+                    words[i] = CInstructionMapper.encodeAddress(address, instructions.getLineNumber(i));
+                } else {
+                    indexes.computeIfAbsent(symbol, key -> {
+                        symbols.add(key);
+                        return symbols.size() - 1;
+                    });
+                    words[i] = -1;
+                    relocations++;
+                }
+            }
+        }
+
+        // relocations in address order, which is the order a sequential first pass meets them.
+        int[] relocationAddresses = new int[relocations];
+        int[] relocationSymbols = new int[relocations];
+        int[] relocationLines = new int[relocations];
+        int r = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] < 0) {
+                words[i] = 0;
+                relocationAddresses[r] = i;
+                relocationSymbols[r] = indexes.get(instructions.getSymbol(i));
+                relocationLines[r] = instructions.getLineNumber(i);
+                r++;
+            }
+        }
+
+        // labels defined here, after the referenced symbols so variables keep their order.
+        int labels = chunk.labels.size();
+        int[] exportSymbols = new int[labels];
+        int[] exportAddresses = new int[labels];
+        int[] exportLines = new int[labels];
+        for (int i = 0; i < labels; i++) {
+            ParallelAssembler.Label label = chunk.labels.get(i);
+            exportSymbols[i] = indexes.computeIfAbsent(label.name, key -> {
+                symbols.add(key);
+                return symbols.size() - 1;
+            });
+            exportAddresses[i] = label.address;
+            exportLines[i] = label.lineNumber;
+        }
+
+        byte[] kinds = new byte[symbols.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = ((SymbolTable.classify(symbols.get(i)) & SymbolTable.LABEL) != 0) ? LABEL : VARIABLE;
+        }
+        return new ObjectModule(name, chunk.lineCount, words, symbols.toArray(new String[0]), kinds,
+                                exportSymbols, exportAddresses, exportLines,
+                                relocationAddresses, relocationSymbols, relocationLines);
+    }
+
+    /**
+     * Reads a .hobj file.
+     * @param path the object file.
+     * @return the module.
+     * @throws AssemblyException if the file can't be read or isn't a valid object file.
+     */
+    public static ObjectModule read(Path path) {
+        ByteBuffer in;
+        try {
+            in = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new AssemblyException("File not found, or could not be accessed: " + path, e);
+        }
+        try {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                throw new AssemblyException("Not an object file: " + path);
+            }
+            int lineCount = in.getInt();
+            int[] words = new int[in.getInt()];
+            String[] symbols = new String[in.getInt()];
+            int exports = in.getInt();
+            int relocations = in.getInt();
+
+            byte[] kinds = new byte[symbols.length];
+            for (int i = 0; i < symbols.length; i++) {
+                kinds[i] = in.get();
+                int length = in.getShort() & 0xFFFF;
+                symbols[i] = new String(in.array(), in.position(), length, StandardCharsets.ISO_8859_1);
+                in.position(in.position() + length);
+            }
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.getShort() & 0xFFFF;
+            }
+            int[] exportSymbols = new int[exports];
+            int[] exportAddresses = new int[exports];
+            int[] exportLines = new int[exports];
+            for (int i = 0; i < exports; i++) {
+                exportSymbols[i] = checkSymbol(in.getInt(), symbols, path);
+                exportAddresses[i] = checkAddress(in.getInt(), words.length, path);
+                exportLines[i] = in.getInt();
+            }
+            int[] relocationAddresses = new int[relocations];
+            int[] relocationSymbols = new int[relocations];
+            int[] relocationLines = new int[relocations];
+            for (int i = 0; i < relocations; i++) {
+                relocationAddresses[i] = checkAddress(in.getInt(), words.length - 1, path);
+                if (i > 0 && relocationAddresses[i] <= relocationAddresses[i - 1]) {
+                    throw new AssemblyException("Relocations out of order in object file: " + path);
+                }
+                relocationSymbols[i] = checkSymbol(in.getInt(), symbols, path);
+                relocationLines[i] = in.getInt();
+            }
+            return new ObjectModule(path.toString(), lineCount, words, symbols, kinds,
+                                    exportSymbols, exportAddresses, exportLines,
+                                    relocationAddresses, relocationSymbols, relocationLines);
+        } catch (BufferUnderflowException | NegativeArraySizeException | IndexOutOfBoundsException e) {
+            throw new AssemblyException("Truncated or damaged object file: " + path);
+        }
+    }
+
+    /**
+     * Writes the module as a .hobj file.
+     * @param path the file to create, or replace.
+     * @throws AssemblyException if the file can't be written.
+     */
+    public void write(Path path) {
+        ByteBuffer out = ByteBuffer.allocate(size());
+        out.putInt(MAGIC).putInt(VERSION).putInt(lineCount).putInt(words.length).putInt(symbols.length)
+           .putInt(exportSymbols.length).putInt(relocationAddresses.length);
+        for (int i = 0; i < symbols.length; i++) {
+            out.put(kinds[i]).putShort((short) symbols[i].length());
+            out.put(symbols[i].getBytes(StandardCharsets.ISO_8859_1));
+        }
+        for (int word : words) {
+            out.putShort((short) word);
+        }
+        for (int i = 0; i < exportSymbols.length; i++) {
+            out.putInt(exportSymbols[i]).putInt(exportAddresses[i]).putInt(exportLines[i]);
+        }
+        for (int i = 0; i < relocationAddresses.length; i++) {
+            out.putInt(relocationAddresses[i]).putInt(relocationSymbols[i]).putInt(relocationLines[i]);
+        }
+        try {
+            Files.write(path, out.array());
+        } catch (IOException e) {
+            throw new AssemblyException("Could not write object file " + path, e);
+        }
+    }
+
+    /**
+     * @return the size of the module's .hobj file in bytes.
+     */
+    public int size() {
+        int size = HEADER_SIZE + words.length * 2 + (exportSymbols.length + relocationAddresses.length) * 12;
+        for (String symbol : symbols) {
+            size += 3 + symbol.length();
+        }
+        return size;
+    }
+
+    private static int checkSymbol(int symbol, String[] symbols, Path path) {
+        if (symbol < 0 || symbol >= symbols.length) {
+            throw new AssemblyException("Bad symbol index in object file: " + path);
+        }
+        return symbol;
+    }
+
+    private static int checkAddress(int address, int max, Path path) {
+        if (address < 0 || address > max) {
+            throw new AssemblyException("Bad address in object file: " + path);
+        }
+        return address;
+    }
+
+    /*
+    getters, the arrays are owned by the module and are not copied.
+     */
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    int[] getWords() {
+        return words;
+    }
+
+    String[] getSymbols() {
+        return symbols;
+    }
+
+    byte[] getKinds() {
+        return kinds;
+    }
+
+    int[] getExportSymbols() {
+        return exportSymbols;
+    }
+
+    int[] getExportAddresses() {
+        return exportAddresses;
+    }
+
+    int[] getExportLines() {
+        return exportLines;
+    }
+
+    int[] getRelocationAddresses() {
+        return relocationAddresses;
+    }
+
+    int[] getRelocationSymbols() {
+        return relocationSymbols;
+    }
+
+    int[] getRelocationLines() {
+        return relocationLines;
+    }
+
+}
@@ -0,0 +1,41 @@
+/**
+ * An enum for deciding what format assembled machine words are written in.
+ * HACK is the text format read by the course tools, 16 binary digits and a newline per word.
+ * RAW is the words themselves, 2 bytes each in big endian order.
+ * ROM is a RAW image behind a 12 byte header: the magic "HROM", the word count and a CRC32 of the words.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public enum OutputFormat {
+    HACK(".hack"),
+    RAW(".bin"),
+    ROM(".rom");
+
+    // the extension given to files written in this format.
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return the file extension, including the dot.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Finds the format that files with the given name are written in, by extension.
+     * @param fileName the name of the file.
+     * @return the format, or null if the extension isn't one of ours.
+     */
+    public static OutputFormat forFileName(String fileName) {
+        for (OutputFormat format : values()) {
+            if (fileName.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,333 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Handles assembling a single large ASM file on every core.
+ * 1: The input is split at line boundaries into chunks.
+ * 2: Each chunk is parsed and encoded on its own, recording its local instruction count, the labels it defines and
+ *    the variables it uses in the order they are first seen. Symbolic A instructions are left unresolved.
+ * 3: A prefix sum over the instruction and line counts gives each chunk its global ROM address and line offset.
+ * 4: Labels are placed in the symbolTable in chunk order, then variables are allocated from RAM 16 in chunk order,
+ *    giving exactly the addresses of a sequential first pass.
+ * 5: Each chunk resolves its symbolic A instructions in parallel, and the chunks are joined.
+ * Errors are reported for the earliest chunk that has one, so they match the sequential assembler too.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class ParallelAssembler {
+
+    // constants, the smallest chunk worth handing to its own core, chunks per core for balancing, and a guess of the
+    // source bytes per instruction for sizing a chunk.
+    private static final int MIN_CHUNK_BYTES = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int BYTES_PER_INSTRUCTION = 8;
+
+    /**
+     * Assembles ASM text with one thread per core.
+     * @param input the ASM text.
+     * @return the machine words, symbols and diagnostics, identical to Assembler.assemble().
+     * @throws AssemblyException if the text can't be assembled.
+     */
+    public static AssemblyResult assemble(ByteBuffer input) {
+        return assemble(input, new AssemblyStats(false));
+    }
+
+    /**
+     * Assembles ASM text with one thread per core, measuring into stats. Lines are lexed, classified and encoded
+     * together on many threads, so that time is all counted as the first pass.
+     * @param input the ASM text.
+     * @param stats filled with the time of each phase and the counters of the text.
+     * @return the machine words, symbols and diagnostics, identical to Assembler.assemble().
+     * @throws AssemblyException if the text can't be assembled.
+     */
+    public static AssemblyResult assemble(ByteBuffer input, AssemblyStats stats) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunks = (int) Math.max(1, Math.min((long) threads * CHUNKS_PER_THREAD, input.remaining() / MIN_CHUNK_BYTES));
+        return assemble(input, chunks, threads, stats);
+    }
+
+    /**
+     * Assembles ASM text split into a given number of chunks.
+     * @param input the ASM text.
+     * @param chunkCount the number of chunks to split the input into.
+     * @param threads the number of threads to work with.
+     * @return the machine words, symbols and diagnostics, identical to Assembler.assemble().
+     * @throws AssemblyException if the text can't be assembled.
+     */
+    public static AssemblyResult assemble(ByteBuffer input, int chunkCount, int threads) {
+        return assemble(input, chunkCount, threads, new AssemblyStats(false));
+    }
+
+    // assembles ASM text split into chunks, measuring into stats.
+    private static AssemblyResult assemble(ByteBuffer input, int chunkCount, int threads, AssemblyStats stats) {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, chunkCount)));
+        try {
+            // parses every chunk.
+            stats.begin(AssemblyStats.Phase.FIRST_PASS);
+            List<Chunk> chunks = split(input, chunkCount);
+            runAll(pool, chunks, chunk -> {
+                chunk.parse();
+                return null;
+            });
+            stats.end(AssemblyStats.Phase.FIRST_PASS);
+            return link(chunks, pool, stats);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Joins parsed chunks into one program, steps 3 to 5. The chunks are resolved in place.
+     * @param chunks the parsed chunks, in file order.
+     * @param pool the pool to resolve the chunks on, or null to resolve them on the calling thread.
+     * @param stats filled with the time spent and the counters of the chunks.
+     * @return the machine words, symbols and diagnostics, identical to Assembler.assemble().
+     * @throws AssemblyException if a chunk has an error, or a label is never defined.
+     */
+    static AssemblyResult link(List<Chunk> chunks, ExecutorService pool, AssemblyStats stats) {
+        stats.begin(AssemblyStats.Phase.RESOLVE);
+
+        // prefix sums, and the first error in file order.
+        int address = 0;
+        int lines = 0;
+        for (Chunk chunk : chunks) {
+            chunk.baseAddress = address;
+            chunk.baseLine = lines;
+            if (chunk.error != null) {
+                throw new AssemblyException(chunk.error, lines + chunk.errorLine);
+            }
+            address += chunk.instructions.size();
+            lines += chunk.lineCount;
+        }
+
+        SymbolTable table = new SymbolTable();
+        List<String> diagnostics = new ArrayList<>();
+        SymbolResolver resolver = placeSymbols(chunks, table, diagnostics);
+
+        // resolves every chunk against the finished table.
+        runAll(pool, chunks, chunk -> {
+            chunk.resolve(table);
+            return null;
+        });
+        InstructionList instructions = new InstructionList();
+        for (Chunk chunk : chunks) {
+            if (chunk.error != null) {
+                throw new AssemblyException(chunk.error, chunk.baseLine + chunk.errorLine);
+            }
+            if (chunk.undefined >= 0) {
+                throw new AssemblyException("Undefined label " + chunk.instructions.getSymbol(chunk.undefined),
+                                            chunk.baseLine + chunk.instructions.getLineNumber(chunk.undefined));
+            }
+            instructions.addAll(chunk.instructions, chunk.baseLine);
+        }
+
+        stats.end(AssemblyStats.Phase.RESOLVE);
+        for (Chunk chunk : chunks) {
+            stats.add(chunk.stats);
+        }
+        stats.countSymbols(table, resolver.getVariableCount());
+        stats.setSourceLines(lines);
+        return new AssemblyResult(instructions, table.toMap(), diagnostics, lines);
+    }
+
+    /**
+     * Places every label, then every variable, in file order, which gives each the address the sequential first
+     * pass would.
+     * @param chunks the parsed chunks, in file order, with their base address and line set.
+     * @param table filled with the labels and variables.
+     * @param diagnostics filled with the labels defined twice.
+     * @return the resolver that placed them, to count the variables.
+     */
+    static SymbolResolver placeSymbols(List<Chunk> chunks, SymbolTable table, List<String> diagnostics) {
+        SymbolResolver resolver = new SymbolResolver(table, diagnostics);
+        for (Chunk chunk : chunks) {
+            for (Label label : chunk.labels) {
+                resolver.place(label.name, chunk.baseLine + label.lineNumber, chunk.baseAddress + label.address);
+            }
+        }
+        for (Chunk chunk : chunks) {
+            for (String variable : chunk.variables) {
+                resolver.resolve(variable, SymbolTable.classify(variable), chunk.baseLine);
+            }
+        }
+        return resolver;
+    }
+
+    // splits the input into chunks that end just after a newline.
+    private static List<Chunk> split(ByteBuffer input, int chunkCount) {
+        ByteBuffer text = input.slice();
+        int size = text.limit();
+        List<Chunk> chunks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= chunkCount && start < size; i++) {
+            int end = (i == chunkCount) ? size : Math.max(start, (int) ((long) size * i / chunkCount));
+            while (end < size && end > 0 && text.get(end - 1) != '\n') {
+                end++;
+            }
+            if (end > start) {
+                chunks.add(new Chunk(text.duplicate().position(start).limit(end)));
+                start = end;
+            }
+        }
+        return chunks;
+    }
+
+    // runs a task for every chunk on the pool, or in order without one, rethrowing whatever a task threw.
+    private static void runAll(ExecutorService pool, List<Chunk> chunks, ChunkTask task) {
+        if (pool == null) {
+            for (Chunk chunk : chunks) {
+                task.run(chunk);
+            }
+            return;
+        }
+        List<Future<Void>> jobs = new ArrayList<>();
+        for (Chunk chunk : chunks) {
+            Callable<Void> job = () -> task.run(chunk);
+            jobs.add(pool.submit(job));
+        }
+        try {
+            for (Future<Void> job : jobs) {
+                job.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssemblyException("Interrupted while assembling.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AssemblyException("Could not assemble.", e.getCause());
+        }
+    }
+
+    // a step run on every chunk.
+    private interface ChunkTask {
+        Void run(Chunk chunk);
+    }
+
+    // a label defined inside of a chunk, address and line are local to the chunk.
+    static class Label {
+        final String name;
+        final int address;
+        final int lineNumber;
+
+        Label(String name, int address, int lineNumber) {
+            this.name = name;
+            this.address = address;
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    // one range of the input and everything found in it.
+    static class Chunk {
+        final ByteBuffer input;
+        final InstructionList instructions;
+        final List<Label> labels = new ArrayList<>();
+        final List<String> variables = new ArrayList<>();
+        final AssemblyStats stats = new AssemblyStats(false);
+        int lineCount;
+        int baseAddress;
+        int baseLine;
+        String error;
+        int errorLine;
+        int undefined = -1;
+
+        Chunk(ByteBuffer input) {
+            this(input, Math.max(16, input.remaining() / BYTES_PER_INSTRUCTION));
+        }
+
+        Chunk(ByteBuffer input, int capacity) {
+            this.input = input;
+            this.instructions = new InstructionList(capacity);
+        }
+
+        // the same checks as Assembler's first pass, see SymbolResolver, except that no symbol is resolved. Stops at
+        // the first error.
+        void parse() {
+            CInstructionCache cache = new CInstructionCache(Assembler.MAPPER);
+            parse(cache);
+            stats.countCache(cache);
+        }
+
+        // parses with a cache the caller shares between chunks parsed one after another, and counts itself.
+        void parse(CInstructionCache cache) {
+            Parser parser = new Parser(input);
+            SymbolTable names = new SymbolTable();
+            Set<String> seen = new HashSet<>();
+            try {
+                while (parser.hasMoreCommands()) {
+                    parser.advance();
+                    int lineNumber = parser.getLineNumber();
+                    stats.count(parser.getCommandType());
+                    switch (parser.getCommandType()) {
+                        case C_COMMAND:
+                            int word = parser.encode(cache);
+                            if (word < 0) {
+                                throw new AssemblyException("Bad C instruction", lineNumber);
+                            }
+                            instructions.add(Command.C_COMMAND, word, null, lineNumber);
+                            break;
+                        case A_COMMAND:
+                            int symbolClass = parser.getSymbolClass();
+                            if ((symbolClass & SymbolTable.NUMERIC) != 0) {
+                                int value = SymbolResolver.constant(symbolClass, lineNumber);
+                                instructions.add(Command.A_COMMAND, CInstructionMapper.encodeAddress(value, lineNumber),
+                                                 null, lineNumber);
+                                break;
+                            }
+
+                            // classifies each symbol the first time the chunk sees it, predefined symbols are valid.
+                            String variable = parser.getSymbol();
+                            if (seen.add(variable) && !names.contains(variable)
+                                && !SymbolResolver.isLabel(variable, symbolClass, lineNumber)) {
+                                variables.add(variable);
+                            }
+                            instructions.addUnresolved(variable, lineNumber, InstructionList.NO_FIX_UP);
+                            break;
+                        case L_COMMAND:
+                            String label = SymbolResolver.labelName(parser.getSymbol(), lineNumber);
+                            labels.add(new Label(label, instructions.size(), lineNumber));
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (AssemblyException e) {
+                error = e.getReason();
+                errorLine = e.getLineNumber();
+                return;
+            }
+            lineCount = parser.getLineNumber();
+        }
+
+        // resolves every symbolic A instruction, remembers the first symbol that isn't in the table, or the first
+        // address that doesn't fit.
+        void resolve(SymbolTable table) {
+            try {
+                for (int i = 0; i < instructions.size(); i++) {
+                    if (!instructions.isResolved(i)) {
+                        int address = table.get(instructions.getSymbol(i));
+                        if (address == SymbolTable.NOT_FOUND) {
+                            undefined = i;
+                            return;
+                        }
+                        instructions.setWord(i, CInstructionMapper.encodeAddress(address,
+                                                                                 instructions.getLineNumber(i)));
+                    }
+                }
+            } catch (AssemblyException e) {
+                error = e.getReason();
+                errorLine = e.getLineNumber();
+            }
+        }
+    }
+
+}
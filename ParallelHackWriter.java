@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Writes a HACK file with several threads at once.
+ * Every record of a HACK file is exactly 17 bytes, so once every label is resolved the size of the file and the offset
+ * of every word in it are known. The file is preallocated to its final size, split into one range of words per thread,
+ * and each thread maps its own range of the file and renders its words straight into it.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class ParallelHackWriter {
+
+    // constants, the most words a single mapping may hold and the words rendered per copy into the mapping.
+    private static final int MAX_WORDS_PER_MAPPING = Integer.MAX_VALUE / HackWriter.RECORD_SIZE;
+    private static final int BATCH_WORDS = 4096;
+
+    /**
+     * Writes the words to a HACK file.
+     * @param binaryFileName the name of the file to create, or replace.
+     * @param words the machine words.
+     * @param count the number of words to write, starting from the first.
+     * @param threads the number of threads to write with.
+     * @throws IOException if the file couldn't be created or written.
+     */
+    public static void write(String binaryFileName, int[] words, int count, int threads) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(binaryFileName, "rw")) {
+            file.setLength((long) count * HackWriter.RECORD_SIZE);
+            if (count == 0) {
+                return;
+            }
+            FileChannel channel = file.getChannel();
+
+            // splits the words into one range per thread, no range may be larger than a single mapping.
+            int ranges = Math.max(threads, (count + MAX_WORDS_PER_MAPPING - 1) / MAX_WORDS_PER_MAPPING);
+            ranges = Math.min(ranges, count);
+            int perRange = (count + ranges - 1) / ranges;
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, ranges));
+            try {
+                List<Future<?>> jobs = new ArrayList<>();
+                for (int from = 0; from < count; from += perRange) {
+                    int start = from;
+                    int end = Math.min(count, from + perRange);
+                    jobs.add(pool.submit(() -> {
+                        writeRange(channel, words, start, end);
+                        return null;
+                    }));
+                }
+                for (Future<?> job : jobs) {
+                    job.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing " + binaryFileName, e);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not write " + binaryFileName, e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    // maps the range of the file holding words [from, to) and renders them into it.
+    private static void writeRange(FileChannel channel, int[] words, int from, int to) throws IOException {
+        MappedByteBuffer target = channel.map(FileChannel.MapMode.READ_WRITE,
+                                              (long) from * HackWriter.RECORD_SIZE,
+                                              (long) (to - from) * HackWriter.RECORD_SIZE);
+        byte[] batch = new byte[BATCH_WORDS * HackWriter.RECORD_SIZE];
+        for (int i = from; i < to; i += BATCH_WORDS) {
+            int end = Math.min(to, i + BATCH_WORDS);
+            for (int j = i; j < end; j++) {
+                HackWriter.render(words[j], batch, (j - i) * HackWriter.RECORD_SIZE);
+            }
+            target.put(batch, 0, (end - i) * HackWriter.RECORD_SIZE);
+        }
+    }
+
+}
@@ -1,15 +1,29 @@
-import java.io.File;
 import java.io.IOException;
-import java.util.Scanner;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Handles parsing lines from a file. Does this by:
- * 1: Gathering a rawLine.
- * 2: Sanitizing the rawLine into a cleanLine.
+ * 1: Finding the bounds of the rawLine inside of the input buffer.
+ * 2: Sanitizing the rawLine into a cleanLine, copying bytes while skipping whitespace and comments.
  * 3: Gathering the COMMAND_TYPE from the cleanLine.
  * 4: Parses the cleanLine based upon what COMMAND_TYPE has been retrieved.
  *
  * Repeat this process on a per line basis, until text file has been fully read.
+ * Regular files are memory mapped, anything else (such as a pipe) is read into a direct buffer. A stream can also be
+ * parsed as it arrives, through a window that only holds the lines not read yet. Lines are scanned as
+ * ASCII bytes into a reused buffer, line ends, indentation and comments are found by a LineScanner. Whole C
+ * instructions are encoded through a CInstructionCache, mnemonics are also handed out as packed int keys and symbols
+ * are interned, so the key, id and value getters never allocate; Strings are only built by the mnemonic and debugging
+ * getters.
  *
  * @author Mark Alan Vincent II
  * @version 1.0
@@ -22,18 +36,38 @@ public class Parser {
     private final Command C_COMMAND = Command.C_COMMAND;
     private final Command L_COMMAND = Command.L_COMMAND;
 
+    // constants, size of the first direct buffer used for input that can't be mapped, and of the window of a stream.
+    private static final int STREAM_BUFFER_SIZE = 1 << 20;
+    private static final int WINDOW_SIZE = 1 << 16;
+
+    // the scanner every parser uses, picked once. Scanners hold no state, and picking one loads a class, which costs
+    // more than a small chunk takes to parse.
+    private static final LineScanner SCANNER = LineScanner.best();
+
     // file instanced variables
-    private Scanner inputFile;
-    private int     lineNumber;
-    private String  rawLine;
+    private final LineScanner scanner;
+    private final ReadableByteChannel stream;
+    private ByteBuffer input;
+    private boolean    endOfStream;
+    private int        position;
+    private int        lineNumber;
+    private int        rawStart;
+    private int        rawEnd;
 
     // parsed instanced variables.
-    private String  cleanLine;
+    private byte[]  cleanLine = new byte[128];
+    private int     cleanLength;
+    private int     equalsIndex;
+    private int     semicolonIndex;
     private Command commandType;
-    private String  symbol;
-    private String  destMnemonic;
-    private String  compMnemonic;
-    private String  jumpMnemonic;
+    private int     symbolStart;
+    private int     symbolEnd;
+    private int     symbolId;
+
+    // interned symbols, an open addressing table of ids into internedNames.
+    private int[]    internedSlots = new int[256];
+    private String[] internedNames = new String[128];
+    private int      internedCount;
 
     /*
     Drivers
@@ -42,41 +76,95 @@ public class Parser {
     /**
      * Constructor for parsing a file.
      * pre: provided file is ASM file
-     * post: if file can't be opened, throws and exception, else opens a I/O stream with file.
+     * post: if file can't be opened, throws an AssemblyException, else maps the file (or reads it, if it can't be
+     *       mapped).
      * @param fileName the name of the file to parse.
      */
     public Parser(String fileName) {
-        try {
-            inputFile = new Scanner(new File(fileName));
-        } catch (IOException e) {
-            System.err.println("File not found, or could not be accessed. Please try with a different path / file.");
-            System.exit(0);
+        this(open(fileName), SCANNER);
+    }
+
+    /**
+     * Opens a file for parsing, maps it if it's a regular file and reads it into a direct buffer if else.
+     * @param fileName the name of the file.
+     * @return the contents of the file.
+     * @throws AssemblyException if the file can't be opened.
+     */
+    static ByteBuffer open(String fileName) {
+        Path path = Paths.get(fileName);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (Files.isRegularFile(path)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                return readFully(channel);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new AssemblyException("File not found, or could not be accessed: " + fileName, e);
         }
     }
 
     /**
-     * returns boolean if more commands left, closes stream if else.
-     * pre: file stream is open.
-     * post: returns true if more commands exist, returns false if else and closes the stream.
+     * Constructor for parsing input that is already in memory.
+     * pre: input holds ASM text between its position and limit.
+     * post: the parser reads from the input's position up to its limit.
+     * @param input the ASM text.
+     */
+    public Parser(ByteBuffer input) {
+        this(input, SCANNER);
+    }
+
+    /**
+     * Constructor for parsing input that is already in memory with a specific scanner, used to compare scanners.
+     * @param input the ASM text.
+     * @param scanner the scanner used to find lines and comments.
+     */
+    Parser(ByteBuffer input, LineScanner scanner) {
+        this.scanner = scanner;
+        this.stream = null;
+        this.input = input.slice();
+    }
+
+    /**
+     * Constructor for parsing a stream as it arrives, such as standard in.
+     * pre: in is a stream of ASM text.
+     * post: the parser reads the stream a window at a time, only the lines not read yet are held in memory. The
+     *       window grows to fit a line longer than it. The stream isn't closed.
+     * @param in the stream of ASM text.
+     */
+    public Parser(InputStream in) {
+        this.scanner = SCANNER;
+        this.stream = Channels.newChannel(in);
+        this.input = ByteBuffer.allocate(WINDOW_SIZE).limit(0);
+    }
+
+    /**
+     * returns boolean if more commands left.
+     * pre: input has been opened.
+     * post: returns true if more commands exist, returns false if else.
      * @return boolean if more commands exist.
      */
     public boolean hasMoreCommands() {
-        if (inputFile.hasNextLine()) {
-            return true;
-        } else {
-            inputFile.close();
-            return false;
-        }
+        return position < input.limit() || fill();
     }
 
     /**
      * Advances the parser by 1 line of the file.
-     * pre: file stream is open, called only if hasMoreCommands() is true.
+     * pre: input has been opened, called only if hasMoreCommands() is true.
      * post: current instruction parts put into instance variables.
      */
     public void advance() {
         if (hasMoreCommands()) {
-            rawLine = inputFile.nextLine();
+            // finds the end of the raw line, the next line starts after the newline.
+            rawStart = position;
+            rawEnd = scanner.lineEnd(input, rawStart, input.limit());
+            // a streamed line may go on past the bytes read so far, the window moves the line to its start.
+            while (rawEnd == input.limit() && fill()) {
+                int scanned = rawEnd - rawStart;
+                rawStart = position;
+                rawEnd = scanner.lineEnd(input, rawStart + scanned, input.limit());
+            }
+            position = rawEnd + 1;
+
             cleanLine();
             parse();
             // increments lineNumber
@@ -85,28 +173,94 @@ public class Parser {
 
     }
 
+    // reads more of a stream into the window, keeping the bytes from position on and moving them to its start.
+    // the window is doubled when it's full of one line. Returns false if there is no stream or it has ended.
+    private boolean fill() {
+        if (stream == null || endOfStream) {
+            return false;
+        }
+        int unread = input.limit() - position;
+        ByteBuffer window = (unread == input.capacity()) ? ByteBuffer.allocate(input.capacity() * 2) : input;
+        input.position(position);
+        if (window == input) {
+            input.compact();
+        } else {
+            window.put(input);
+        }
+        int read;
+        try {
+            read = stream.read(window);
+        } catch (IOException e) {
+            throw new AssemblyException("Could not read ASM input.", e);
+        }
+        window.flip();
+        input = window;
+        position = 0;
+        if (read < 0) {
+            endOfStream = true;
+            return false;
+        }
+        return true;
+    }
+
+    // reads a channel that can't be mapped into a direct buffer, growing the buffer as needed.
+    private static ByteBuffer readFully(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(STREAM_BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            if (!buffer.hasRemaining()) {
+                ByteBuffer bigger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
 
 
     /*
     Parsing helpers
      */
 
-    // cleans the current line.
+    // cleans the current line, copying everything but whitespace up to the start of a comment.
+    // remembers where the first = and ; are while copying.
     private void cleanLine() {
-        cleanLine = rawLine.trim();
-        int index  = cleanLine.indexOf("//");
-        cleanLine = (index!= -1) ?
-                    cleanLine.substring(0, index).trim().replaceAll(" ", "")
-                    : cleanLine.replaceAll(" ", "");
+        cleanLength = 0;
+        equalsIndex = -1;
+        semicolonIndex = -1;
+
+        // skips indentation, the rest of the line after a comment is ignored.
+        int codeStart = scanner.skipBlanks(input, rawStart, rawEnd);
+        int codeEnd = scanner.commentStart(input, codeStart, rawEnd);
+        for (int i = codeStart; i < codeEnd; i++) {
+            byte b = input.get(i);
+            if (b <= ' ' && b >= 0) {
+                // whitespace, includes tabs and the \r of a \r\n line ending.
+                continue;
+            }
+            if (cleanLength == cleanLine.length) {
+                byte[] bigger = new byte[cleanLine.length * 2];
+                System.arraycopy(cleanLine, 0, bigger, 0, cleanLength);
+                cleanLine = bigger;
+            }
+            if (b == '=' && equalsIndex < 0) {
+                equalsIndex = cleanLength;
+            } else if (b == ';' && semicolonIndex < 0) {
+                semicolonIndex = cleanLength;
+            }
+            cleanLine[cleanLength++] = b;
+        }
     }
 
     // gathers the command type.
     private void parseCommandType(){
-        if (cleanLine.length() == 0) {
+        if (cleanLength == 0) {
             // NO
             commandType = NO_COMMAND;
         } else {
-            char indexZero = cleanLine.charAt(0);
+            byte indexZero = cleanLine[0];
             switch (indexZero) {
                 case '@':
                     commandType = A_COMMAND;
@@ -132,10 +286,7 @@ public class Parser {
                 // nothing happens.
                 break;
             case C_COMMAND:
-                // parse as a C instruction.
-                parseDest();
-                parseComp();
-                parseJump();
+                // C instructions are split into mnemonics on demand, most are encoded whole from a cache.
                 break;
             default:
                 // parse as a A or L command.
@@ -147,56 +298,123 @@ public class Parser {
 
     // parses symbol for A- or L- commands
     private void parseSymbol() {
-        if (cleanLine.charAt(0) == '(') {
+        symbolId = -1;
+        if (cleanLine[0] == '(') {
             // removes ( and ) from symbol
-            String label = cleanLine.substring(1);
-            symbol = label.substring(0, (label.indexOf(')')));
+            symbolStart = 1;
+            symbolEnd = 1;
+            while (symbolEnd < cleanLength && cleanLine[symbolEnd] != ')') {
+                symbolEnd++;
+            }
         } else {
             // removes @, everything afterward.
-            symbol = cleanLine.substring(1);
+            symbolStart = 1;
+            symbolEnd = cleanLength;
         }
     }
 
     // parses the destination values
-    private void parseDest() {
+    private int parseDest() {
         // checks if the = sign exist or not.
-        if (cleanLine.indexOf('=') != -1) {
-            destMnemonic = cleanLine.substring(0, cleanLine.indexOf('='));
-
-        } else {
-            destMnemonic = null;
+        if (equalsIndex != -1) {
+            return CInstructionMapper.key(cleanLine, 0, equalsIndex);
         }
+        return CInstructionMapper.NO_MNEMONIC;
     }
 
     // parses the computation values
-    private void parseComp() {
-        // checks if the = sign exist or not.
-        if (cleanLine.indexOf('=') != -1) {
-            // checks if the ; sign exist or not.
-            if (cleanLine.indexOf(';') != -1) {
-                compMnemonic = cleanLine.substring(cleanLine.indexOf('=') + 1, cleanLine.indexOf(';'));
-            } else {
-                compMnemonic = cleanLine.substring(cleanLine.indexOf('=') + 1);
+    private int parseComp() {
+        return CInstructionMapper.key(cleanLine, compStart(), compEnd());
+    }
+
+    // parses the jump values.
+    private int parseJump() {
+        // checks if the ; exist or not.
+        if (semicolonIndex != -1) {
+            return CInstructionMapper.key(cleanLine, semicolonIndex + 1, cleanLength);
+        }
+        // no ;, no jump.
+        return CInstructionMapper.NO_MNEMONIC;
+    }
+
+    // comp starts after the = sign if it exists, and ends at the ; if it exists.
+    private int compStart() {
+        return (equalsIndex != -1) ? equalsIndex + 1 : 0;
+    }
+
+    private int compEnd() {
+        return (semicolonIndex != -1) ? semicolonIndex : cleanLength;
+    }
+
+    // builds a String from a range of the cleanLine.
+    private String text(int start, int end) {
+        return (start <= end) ? new String(cleanLine, start, end - start, StandardCharsets.ISO_8859_1) : "";
+    }
+
+    // finds the id of the current symbol, adding it to the interned symbols the first time it is seen.
+    private int internSymbol() {
+        int hash = 0;
+        for (int i = symbolStart; i < symbolEnd; i++) {
+            hash = 31 * hash + cleanLine[i];
+        }
+
+        int mask = internedSlots.length - 1;
+        int slot = slotOf(hash);
+        while (internedSlots[slot] != 0) {
+            int id = internedSlots[slot] - 1;
+            if (symbolEquals(internedNames[id])) {
+                return id;
             }
-        } else {
-            // no =, checks if ';' exists.
-            if (cleanLine.indexOf(';') != -1) {
-                compMnemonic = cleanLine.substring(0, cleanLine.indexOf(';'));
-            } else {
-                // no =,  no ;, full value.
-                compMnemonic = cleanLine;
+            slot = (slot + 1) & mask;
+        }
+
+        // new symbol, ids are stored plus one so that 0 marks an empty slot.
+        if (internedCount == internedNames.length) {
+            String[] bigger = new String[internedNames.length * 2];
+            System.arraycopy(internedNames, 0, bigger, 0, internedCount);
+            internedNames = bigger;
+        }
+        internedNames[internedCount] = text(symbolStart, symbolEnd);
+        internedSlots[slot] = ++internedCount;
+        if (internedCount * 2 > internedSlots.length) {
+            rehashSymbols();
+        }
+        return internedCount - 1;
+    }
+
+    // spreads a symbol hash over the interned slots.
+    private int slotOf(int hash) {
+        return (hash * 0x9E3779B1) >>> (32 - Integer.numberOfTrailingZeros(internedSlots.length));
+    }
+
+    // compares the current symbol bytes against an interned name.
+    private boolean symbolEquals(String name) {
+        if (name.length() != symbolEnd - symbolStart) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != cleanLine[symbolStart + i]) {
+                return false;
             }
         }
+        return true;
     }
 
-    // parses the jump values.
-    private void parseJump() {
-        // checks if the ; exist or not.
-        if (cleanLine.indexOf(';') != -1) {
-            jumpMnemonic = cleanLine.substring(cleanLine.indexOf(';') + 1);
-        } else {
-            // no ;, no jump, null value.
-            jumpMnemonic = null;
+    // doubles the interned symbol slots, placing every id again.
+    private void rehashSymbols() {
+        internedSlots = new int[internedSlots.length * 2];
+        int mask = internedSlots.length - 1;
+        for (int id = 0; id < internedCount; id++) {
+            String name = internedNames[id];
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++) {
+                hash = 31 * hash + (byte) name.charAt(i);
+            }
+            int slot = slotOf(hash);
+            while (internedSlots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            internedSlots[slot] = id + 1;
         }
     }
 
@@ -216,12 +434,47 @@ public class Parser {
     }
 
     /**
+     * The symbol is interned, so repeated occurrences of the same symbol return the same String without allocating.
      * pre: parse has already been run.
      * post: gives a valid symbol if commandType is A or L.
      * @return the symbol variable.
      */
     public String getSymbol() {
-        return symbol;
+        int id = getSymbolId();
+        return internedNames[id];
+    }
+
+    /**
+     * pre: parse has already been run, commandType is A or L.
+     * post: gives the id of the interned symbol, the same symbol always has the same id within this parser.
+     * @return the symbol id.
+     */
+    public int getSymbolId() {
+        if (symbolId < 0) {
+            symbolId = internSymbol();
+        }
+        return symbolId;
+    }
+
+    /**
+     * Classifies the symbol in one scan, straight from the clean line.
+     * pre: parse has already been run, commandType is A or L.
+     * post: gives the flags of SymbolTable.classify, with the value of a numeric symbol.
+     * @return the class of the symbol.
+     */
+    public int getSymbolClass() {
+        return SymbolTable.classify(cleanLine, symbolStart, symbolEnd);
+    }
+
+    /**
+     * Reads the symbol as a decimal constant, straight from the clean line.
+     * pre: parse has already been run, commandType is A or L.
+     * post: gives the value if the symbol is all digits, SymbolTable.VALUE_MASK if it is too large, -1 if else.
+     * @return the value of the symbol, or -1.
+     */
+    public int getSymbolValue() {
+        int symbolClass = getSymbolClass();
+        return ((symbolClass & SymbolTable.NUMERIC) != 0) ? symbolClass & SymbolTable.VALUE_MASK : -1;
     }
 
     /**
@@ -230,7 +483,7 @@ public class Parser {
      * @return the destMnemonic variable.
      */
     public String getDestMnemonic() {
-        return destMnemonic;
+        return (equalsIndex != -1) ? text(0, equalsIndex) : null;
     }
 
     /**
@@ -239,7 +492,7 @@ public class Parser {
      * @return the compMnemonic variable.
      */
     public String getCompMnemonic() {
-        return compMnemonic;
+        return text(compStart(), compEnd());
     }
 
     /**
@@ -248,7 +501,46 @@ public class Parser {
      * @return the jumpMnemonic variable.
      */
     public String getJumpMnemonic() {
-        return jumpMnemonic;
+        return (semicolonIndex != -1) ? text(semicolonIndex + 1, cleanLength) : null;
+    }
+
+    /*
+    allocation free getters, the keys are packed mnemonics for use with CInstructionMapper.encode(int, int, int).
+     */
+
+    /**
+     * pre: the parse method has already been run, commandType is C.
+     * @return the packed destination mnemonic.
+     */
+    public int getDestKey() {
+        return parseDest();
+    }
+
+    /**
+     * pre: the parse method has already been run, commandType is C.
+     * @return the packed computation mnemonic.
+     */
+    public int getCompKey() {
+        return parseComp();
+    }
+
+    /**
+     * pre: the parse method has already been run, commandType is C.
+     * @return the packed jump mnemonic.
+     */
+    public int getJumpKey() {
+        return parseJump();
+    }
+
+    /**
+     * Encodes the whole C instruction through a cache, keyed by its clean text.
+     * pre: the parse method has already been run, commandType is C.
+     * post: returns the machine word if the instruction is valid, else returns -1.
+     * @param cache the cache of encoded instructions.
+     * @return the 16 bit machine word, or -1.
+     */
+    public int encode(CInstructionCache cache) {
+        return cache.encode(cleanLine, cleanLength);
     }
 
 
@@ -264,7 +556,9 @@ public class Parser {
      * @return rawLine variable.
      */
     public String getRawLine() {
-        return rawLine;
+        byte[] raw = new byte[rawEnd - rawStart];
+        input.get(rawStart, raw);
+        return new String(raw, StandardCharsets.ISO_8859_1);
     }
 
     /**
@@ -274,7 +568,7 @@ public class Parser {
      * @return cleanLine variable.
      */
     public String getCleanLine() {
-        return cleanLine;
+        return text(0, cleanLength);
     }
 
     /**
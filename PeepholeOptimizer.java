@@ -0,0 +1,354 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles removing redundant instructions from a program after its lines are classified and encoded, but before
+ * any label is given its address. Runs a table of rewrite rules over the instruction stream until nothing changes,
+ * then moves every label to the new address of the instruction it pointed to.
+ *
+ * The rules only rely on what the A register is known to hold, which is forgotten at every label since a jump may
+ * arrive there from anywhere:
+ * REDUNDANT_LOAD: @X when A already holds X, or @X A=M when A already holds RAM[X] and no memory was written since.
+ * DEAD_LOAD:      @X straight before another A instruction, which overwrites it.
+ * NO_OP:          D=D, A=A, or a computation without a destination or a jump.
+ * JUMP_TO_NEXT:   a jump to the label right after it, the jump bits are dropped and NO_OP removes what's left.
+ * Loads of RAM[X] are only tracked for the registers and constant addresses below the memory mapped screen and
+ * keyboard, which can change on their own.
+ *
+ * Programs jumping to numeric ROM addresses other than 0, or to arithmetic on a label or a number through A or D,
+ * can't be moved around, and are left as they are. So are programs jumping to a value read from RAM once anything
+ * but a label, or a value read from RAM, is written to memory, since a number may then come back as a jump target.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class PeepholeOptimizer {
+
+    /**
+     * The rewrite rules, in the order they are tried on each instruction.
+     */
+    public enum Rule {
+        REDUNDANT_LOAD, DEAD_LOAD, NO_OP, JUMP_TO_NEXT
+    }
+
+    // constants, the most passes over a program, and the first memory mapped address.
+    private static final int MAX_PASSES = 8;
+    private static final int MEMORY_MAPPED = 16384;
+
+    // the encodings the rules look for.
+    private static final int COMP_A = Assembler.MAPPER.comp("A");
+    private static final int COMP_D = Assembler.MAPPER.comp("D");
+    private static final int A_FROM_M = Assembler.MAPPER.encode("A", "M", null);
+    private static final int COMP_M = Assembler.MAPPER.comp("M");
+    private static final int COMP_ZERO = Assembler.MAPPER.comp("0");
+
+    // the a bit of a computation, and the ALU bits that replace D (x) or A and M (y) with a constant.
+    private static final int A_BIT = 0b1000000;
+    private static final int ZERO_X = 0b100000;
+    private static final int ZERO_Y = 0b001000;
+
+    // what the A register is known to hold: nothing, a constant, or the value of RAM at a constant address.
+    private static final int UNKNOWN = 0;
+    private static final int CONSTANT = 1;
+    private static final int LOADED = 2;
+
+    // what a register or memory may hold on its way to a jump, from best to worst: a value read from RAM while
+    // memory only ever holds labels, exactly a label or ROM address 0, or a number or arithmetic on a label or a
+    // number.
+    private static final int TRUSTED = 0;
+    private static final int EXACT = 1;
+    private static final int TAINTED = 2;
+
+    // the predefined symbols, only ever read.
+    private static final SymbolTable PREDEFINED = new SymbolTable();
+
+    // instanced variables, the removals of every rule and why the program was left alone.
+    private final int[] removed = new int[Rule.values().length];
+    private String skipReason;
+
+    // the A register during a pass, a constant is a symbol or a number when symbol is null.
+    private int aState;
+    private String aSymbol;
+    private int aValue;
+
+    /**
+     * Optimizes a parsed chunk in place, its instructions are removed and its labels moved.
+     * @param chunk a chunk holding a whole program, parsed without errors.
+     * @return the number of instructions removed.
+     */
+    int optimize(ParallelAssembler.Chunk chunk) {
+        int before = getRemoved();
+        skipReason = findNumericJump(chunk);
+        if (skipReason != null) {
+            return 0;
+        }
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean[] remove = new boolean[chunk.instructions.size()];
+            if (!pass(chunk, remove)) {
+                break;
+            }
+            int[] newIndex = chunk.instructions.remove(remove);
+            for (int i = 0; i < chunk.labels.size(); i++) {
+                ParallelAssembler.Label label = chunk.labels.get(i);
+                chunk.labels.set(i, new ParallelAssembler.Label(label.name, newIndex[label.address],
+                                                                label.lineNumber));
+            }
+        }
+        return getRemoved() - before;
+    }
+
+    // one pass of every rule, marking the instructions to remove. Returns true if anything changed.
+    private boolean pass(ParallelAssembler.Chunk chunk, boolean[] remove) {
+        InstructionList instructions = chunk.instructions;
+        int size = instructions.size();
+        boolean[] labelled = new boolean[size + 1];
+        Map<String, Integer> labels = new HashMap<>();
+        for (ParallelAssembler.Label label : chunk.labels) {
+            labelled[label.address] = true;
+            labels.putIfAbsent(label.name, label.address);
+        }
+
+        // jumps are only dropped once the pass is done, so the labels seen by the pass stay where they are.
+        int[] counts = new int[removed.length];
+        List<Integer> dropped = new ArrayList<>();
+        forget();
+        for (int i = 0; i < size; i++) {
+            if (labelled[i]) {
+                forget();
+            }
+
+            if (instructions.getKind(i) == Command.A_COMMAND) {
+                String symbol = instructions.isResolved(i) ? null : instructions.getSymbol(i);
+                int value = instructions.isResolved(i) ? instructions.getWord(i) : 0;
+                if (holds(CONSTANT, symbol, value)) {
+                    remove[i] = true;
+                    counts[Rule.REDUNDANT_LOAD.ordinal()]++;
+                } else if (holds(LOADED, symbol, value) && i + 1 < size && !labelled[i + 1]
+                           && instructions.getKind(i + 1) == Command.C_COMMAND
+                           && instructions.getWord(i + 1) == A_FROM_M) {
+                    remove[i] = true;
+                    remove[i + 1] = true;
+                    counts[Rule.REDUNDANT_LOAD.ordinal()] += 2;
+                    i++;
+                } else if (i + 1 < size && instructions.getKind(i + 1) == Command.A_COMMAND) {
+                    remove[i] = true;
+                    counts[Rule.DEAD_LOAD.ordinal()]++;
+                } else {
+                    aState = CONSTANT;
+                    aSymbol = symbol;
+                    aValue = value;
+                }
+                continue;
+            }
+
+            int word = instructions.getWord(i);
+            boolean jumpDropped = false;
+            if (CInstructionMapper.jumpBits(word) != 0 && aState == CONSTANT) {
+                Integer target = (aSymbol != null) ? labels.get(aSymbol) : null;
+                if (target != null && target == i + 1) {
+                    word &= ~0b111;
+                    dropped.add(i);
+                    jumpDropped = true;
+                }
+            }
+
+            int dest = CInstructionMapper.destBits(word);
+            int comp = CInstructionMapper.compBits(word);
+            if (CInstructionMapper.jumpBits(word) == 0 && isNoOp(dest, comp)) {
+                remove[i] = true;
+                counts[(jumpDropped ? Rule.JUMP_TO_NEXT : Rule.NO_OP).ordinal()]++;
+                continue;
+            }
+
+            // writing memory may change the RAM value A was loaded from, writing A loses it unless it's A=M.
+            if ((dest & CInstructionMapper.DEST_M) != 0 && aState == LOADED) {
+                forget();
+            }
+            if ((dest & CInstructionMapper.DEST_A) != 0) {
+                if (word == A_FROM_M && aState == CONSTANT && isPlainMemory()) {
+                    aState = LOADED;
+                } else {
+                    forget();
+                }
+            }
+        }
+
+        for (int index : dropped) {
+            instructions.setWord(index, instructions.getWord(index) & ~0b111);
+        }
+        boolean changed = !dropped.isEmpty();
+        for (int i = 0; i < counts.length; i++) {
+            removed[i] += counts[i];
+            changed |= counts[i] != 0;
+        }
+        return changed;
+    }
+
+    // checks if A is known to hold a constant, or the RAM value at a constant address.
+    private boolean holds(int state, String symbol, int value) {
+        if (aState != state) {
+            return false;
+        }
+        return (symbol != null) ? symbol.equals(aSymbol) : aSymbol == null && aValue == value;
+    }
+
+    /**
+     * Finds a jump to a ROM address given as a number, a variable, or arithmetic on a label or a number, through A,
+     * D or RAM, which would point somewhere else once instructions move. Memory is followed as a whole, not address
+     * by address: a value read from RAM is as good as the worst value any instruction writes to memory, so it only
+     * counts as a label while every write stores a label or another value read from RAM. Any jump may land on any
+     * label, so the registers at every jump are joined into every label, and every write into memory, until that
+     * stops changing.
+     * @param chunk a chunk holding a whole program, parsed without errors.
+     * @return why the program can't be moved around, or null if every jump lands on a label or ROM address 0.
+     */
+    static String findNumericJump(ParallelAssembler.Chunk chunk) {
+        InstructionList instructions = chunk.instructions;
+        boolean[] labelled = new boolean[instructions.size() + 1];
+        for (ParallelAssembler.Label label : chunk.labels) {
+            labelled[label.address] = true;
+        }
+
+        int jumpA = EXACT;
+        int jumpD = EXACT;
+        int memory = TRUSTED;
+        while (true) {
+            // the registers start at 0.
+            int a = EXACT;
+            int d = EXACT;
+            String loaded = null;
+            int nextA = jumpA;
+            int nextD = jumpD;
+            int nextMemory = memory;
+            for (int i = 0; i < instructions.size(); i++) {
+                if (labelled[i]) {
+                    if (jumpA > a) {
+                        a = jumpA;
+                        loaded = null;
+                    }
+                    d = Math.max(d, jumpD);
+                }
+                if (instructions.getKind(i) == Command.A_COMMAND) {
+                    a = isLabelOrStart(instructions, i) ? EXACT : TAINTED;
+                    loaded = instructions.isResolved(i) ? Integer.toString(instructions.getWord(i))
+                             : instructions.getSymbol(i);
+                    continue;
+                }
+
+                int word = instructions.getWord(i);
+                if (CInstructionMapper.jumpBits(word) != 0 && a == TAINTED) {
+                    return "Not optimized, jumps to " + ((loaded != null) ? "ROM address " + loaded
+                                                                          : "a computed ROM address")
+                           + " at line " + instructions.getLineNumber(i);
+                }
+                int out = result(CInstructionMapper.compBits(word), a, d, memory);
+                int dest = CInstructionMapper.destBits(word);
+                if ((dest & CInstructionMapper.DEST_M) != 0) {
+                    nextMemory = Math.max(nextMemory, out);
+                }
+                if ((dest & CInstructionMapper.DEST_A) != 0) {
+                    a = out;
+                    loaded = null;
+                }
+                if ((dest & CInstructionMapper.DEST_D) != 0) {
+                    d = out;
+                }
+                if (CInstructionMapper.jumpBits(word) != 0) {
+                    nextA = Math.max(nextA, a);
+                    nextD = Math.max(nextD, d);
+                }
+            }
+            if (nextA == jumpA && nextD == jumpD && nextMemory == memory) {
+                return null;
+            }
+            jumpA = nextA;
+            jumpD = nextD;
+            memory = nextMemory;
+        }
+    }
+
+    // what a computation may hold, copies keep what they copy, anything else on a label or a number is tainted.
+    // memory is what a value read from RAM may hold.
+    private static int result(int comp, int a, int d, int memory) {
+        int y = ((comp & A_BIT) != 0) ? memory : a;
+        if (comp == COMP_D) {
+            return d;
+        }
+        if (comp == COMP_A || comp == COMP_M) {
+            return y;
+        }
+        boolean readsX = (comp & ZERO_X) == 0;
+        boolean readsY = (comp & ZERO_Y) == 0;
+        if (!readsX && !readsY) {
+            return (comp == COMP_ZERO) ? EXACT : TAINTED;
+        }
+        return ((!readsX || d == TRUSTED) && (!readsY || y == TRUSTED)) ? TRUSTED : TAINTED;
+    }
+
+    // checks if an A instruction loads a label or ROM address 0, the only jump targets that stay put.
+    private static boolean isLabelOrStart(InstructionList instructions, int i) {
+        if (instructions.isResolved(i)) {
+            return instructions.getWord(i) == 0;
+        }
+        String symbol = instructions.getSymbol(i);
+        int address = PREDEFINED.get(symbol);
+        if (address != SymbolTable.NOT_FOUND) {
+            return address == 0;
+        }
+        return (SymbolTable.classify(symbol) & SymbolTable.LABEL) != 0;
+    }
+
+    // checks if A holds a constant address of plain memory, the registers or a number below the screen.
+    private boolean isPlainMemory() {
+        if (aSymbol == null) {
+            return aValue < MEMORY_MAPPED;
+        }
+        int address = PREDEFINED.get(aSymbol);
+        return address != SymbolTable.NOT_FOUND && address < 16;
+    }
+
+    // an instruction without a jump that changes nothing.
+    private static boolean isNoOp(int dest, int comp) {
+        return dest == 0
+               || (dest == CInstructionMapper.DEST_D && comp == COMP_D)
+               || (dest == CInstructionMapper.DEST_A && comp == COMP_A);
+    }
+
+    private void forget() {
+        aState = UNKNOWN;
+        aSymbol = null;
+        aValue = 0;
+    }
+
+    /*
+    getters
+     */
+
+    /**
+     * @return the instructions removed so far, by every rule.
+     */
+    public int getRemoved() {
+        int total = 0;
+        for (int count : removed) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @param rule a rewrite rule.
+     * @return the instructions the rule removed so far.
+     */
+    public int getRemoved(Rule rule) {
+        return removed[rule.ordinal()];
+    }
+
+    /**
+     * @return why the last program was left as it was, or null if it was optimized.
+     */
+    public String getSkipReason() {
+        return skipReason;
+    }
+
+}
@@ -0,0 +1,202 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Handles the compact binary ROM images, RAW and ROM in OutputFormat.
+ * Writes images from machine words, and loads them back by memory mapping the file, so tools can read the words of
+ * an image without parsing any text.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class RomImage {
+
+    // constants, the ROM header is the magic, the word count and the CRC32 of the words.
+    public static final int MAGIC = ('H' << 24) | ('R' << 16) | ('O' << 8) | 'M';
+    public static final int HEADER_SIZE = 12;
+    private static final int CHUNK_WORDS = 1 << 16;
+
+    // instanced variables.
+    private final ShortBuffer words;
+
+    // an image over mapped words.
+    private RomImage(ShortBuffer words) {
+        this.words = words;
+    }
+
+    /**
+     * Writes machine words as a RAW or ROM image.
+     * @param path the file to create, or replace.
+     * @param words the machine words.
+     * @param count the number of words to write, starting from the first.
+     * @param format RAW or ROM.
+     * @throws IOException if the file couldn't be written.
+     */
+    public static void write(Path path, int[] words, int count, OutputFormat format) throws IOException {
+        if (format == OutputFormat.HACK) {
+            throw new IllegalArgumentException("HACK images are text, use HackWriter.");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            // leaves room for the header, which needs the checksum of every word.
+            if (format == OutputFormat.ROM) {
+                channel.position(HEADER_SIZE);
+            }
+
+            CRC32 checksum = new CRC32();
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * 2).order(ByteOrder.BIG_ENDIAN);
+            for (int i = 0; i < count; i += CHUNK_WORDS) {
+                chunk.clear();
+                int end = Math.min(count, i + CHUNK_WORDS);
+                for (int j = i; j < end; j++) {
+                    chunk.putShort((short) words[j]);
+                }
+                chunk.flip();
+                checksum.update(chunk.duplicate());
+                writeFully(channel, chunk);
+            }
+
+            if (format == OutputFormat.ROM) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+                header.putInt(MAGIC).putInt(count).putInt((int) checksum.getValue()).flip();
+                channel.position(0);
+                writeFully(channel, header);
+            }
+        }
+    }
+
+    /**
+     * Builds the header of a ROM image, for an image patched in place rather than written whole.
+     * @param words the machine words of the whole image.
+     * @param count the number of words, starting from the first.
+     * @return the header, to be written at the start of the image.
+     */
+    static ByteBuffer header(int[] words, int count) {
+        CRC32 checksum = new CRC32();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * 2).order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < count; i += CHUNK_WORDS) {
+            chunk.clear();
+            int end = Math.min(count, i + CHUNK_WORDS);
+            for (int j = i; j < end; j++) {
+                chunk.putShort((short) words[j]);
+            }
+            chunk.flip();
+            checksum.update(chunk);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+        header.putInt(MAGIC).putInt(count).putInt((int) checksum.getValue()).flip();
+        return header;
+    }
+
+    /**
+     * Builds a RAW or ROM image in memory, byte for byte what write() puts in a file.
+     * @param words the machine words.
+     * @param count the number of words, starting from the first.
+     * @param format RAW or ROM.
+     * @return the image.
+     */
+    public static byte[] toBytes(int[] words, int count, OutputFormat format) {
+        if (format == OutputFormat.HACK) {
+            throw new IllegalArgumentException("HACK images are text, use HackWriter.");
+        }
+        int header = (format == OutputFormat.ROM) ? HEADER_SIZE : 0;
+        ByteBuffer image = ByteBuffer.allocate(header + count * 2).order(ByteOrder.BIG_ENDIAN);
+        image.position(header);
+        for (int i = 0; i < count; i++) {
+            image.putShort((short) words[i]);
+        }
+        if (format == OutputFormat.ROM) {
+            CRC32 checksum = new CRC32();
+            checksum.update(image.array(), HEADER_SIZE, count * 2);
+            image.putInt(0, MAGIC).putInt(4, count).putInt(8, (int) checksum.getValue());
+        }
+        return image.array();
+    }
+
+    /**
+     * Loads an image, picking RAW or ROM from the file extension.
+     * @param path the image file.
+     * @return the image.
+     * @throws IOException if the file couldn't be read, or isn't a valid image.
+     */
+    public static RomImage open(Path path) throws IOException {
+        OutputFormat format = OutputFormat.forFileName(path.toString());
+        if (format == null || format == OutputFormat.HACK) {
+            throw new IOException("Not a binary ROM image: " + path);
+        }
+        return open(path, format);
+    }
+
+    /**
+     * Loads an image by memory mapping it. ROM images have their header and checksum checked.
+     * @param path the image file.
+     * @param format RAW or ROM.
+     * @return the image.
+     * @throws IOException if the file couldn't be read, or isn't a valid image.
+     */
+    public static RomImage open(Path path, OutputFormat format) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN);
+        }
+
+        if (format == OutputFormat.ROM) {
+            if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+                throw new IOException("Missing ROM header: " + path);
+            }
+            int count = mapped.getInt(4);
+            if (count < 0 || (long) count * 2 != mapped.limit() - HEADER_SIZE) {
+                throw new IOException("Word count doesn't match the size of " + path);
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(mapped.duplicate().position(HEADER_SIZE));
+            if ((int) checksum.getValue() != mapped.getInt(8)) {
+                throw new IOException("Checksum mismatch: " + path);
+            }
+            mapped.position(HEADER_SIZE);
+        } else if (mapped.limit() % 2 != 0) {
+            throw new IOException("Odd number of bytes in RAW image: " + path);
+        }
+
+        return new RomImage(mapped.slice().order(ByteOrder.BIG_ENDIAN).asShortBuffer());
+    }
+
+    /**
+     * @return the number of words in the image.
+     */
+    public int size() {
+        return words.limit();
+    }
+
+    /**
+     * @param address the ROM address.
+     * @return the machine word at the address, 0 - 65535.
+     */
+    public int get(int address) {
+        return words.get(address) & 0xFFFF;
+    }
+
+    /**
+     * @return every word of the image, copied into an array.
+     */
+    public int[] toArray() {
+        int[] array = new int[size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = get(i);
+        }
+        return array;
+    }
+
+    // writes the whole buffer, a channel may take it in several writes.
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
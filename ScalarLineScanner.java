@@ -0,0 +1,38 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Scans lines one byte at a time, works on every JVM.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class ScalarLineScanner implements LineScanner {
+
+    @Override
+    public int lineEnd(ByteBuffer input, int from, int limit) {
+        int i = from;
+        while (i < limit && input.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int skipBlanks(ByteBuffer input, int from, int limit) {
+        int i = from;
+        while (i < limit && input.get(i) <= ' ' && input.get(i) >= 0) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int commentStart(ByteBuffer input, int from, int limit) {
+        for (int i = from; i < limit - 1; i++) {
+            if (input.get(i) == '/' && input.get(i + 1) == '/') {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+}
@@ -0,0 +1,245 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Handles assembling a stream of ASM text into a stream of machine words in one pass, so the assembler can sit in a
+ * pipe between a VM translator and a simulator without any temporary files.
+ * Words are written as soon as they are known. An A instruction referencing a label further down can't be written
+ * until the label is defined, so it and every word after it are held back until then; memory use is bounded by the
+ * distance to the furthest forward reference and the number of symbols, not by the size of the program. The input is
+ * read through a window by Parser, and the output is flushed whenever the input has nothing more to read yet.
+ *
+ * Words are streamed as HACK text or RAW words, ROM images need the word count up front and can't be streamed.
+ * Errors stop the stream, anything written before the error has already been sent on.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class StreamingAssembler {
+
+    // constants, the starting room for held back words, grown by doubling.
+    private static final int INITIAL_PENDING = 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // instanced variables, the held back words by ROM address from flushed up to next.
+    private final WordOutput output;
+    private int[] pending = new int[INITIAL_PENDING];
+    private int flushed;
+    private int next;
+
+    private StreamingAssembler(WordOutput output) {
+        this.output = output;
+    }
+
+    /**
+     * Assembles standard in to standard out for the command line, diagnostics and errors go to standard error.
+     * @param in the stream of ASM text.
+     * @param out where the machine words are written, flushed but not closed.
+     * @param options the output format, and --stats, which are reported on standard error unless written to a file.
+     * @return true if the whole stream was assembled.
+     */
+    public static boolean run(InputStream in, OutputStream out, AssemblerOptions options) {
+        AssemblyStats stats = new AssemblyStats(options.stats, "-");
+        List<String> diagnostics = new ArrayList<>();
+        boolean assembled = true;
+        try {
+            assemble(in, out, options.format, stats, diagnostics);
+        } catch (AssemblyException e) {
+            System.err.println("Error: " + e.getMessage());
+            assembled = false;
+        }
+        for (String diagnostic : diagnostics) {
+            System.err.println("Warning: " + diagnostic);
+        }
+        if (options.stats) {
+            if (options.statsFile == null) {
+                System.err.println(stats.toJson("-"));
+            } else {
+                Assembler.report(stats.toJson("-"), options);
+            }
+        }
+        return assembled;
+    }
+
+    /**
+     * Assembles a stream of ASM text, writing every word as soon as it is known.
+     * @param in the stream of ASM text, read to its end but not closed.
+     * @param out where the machine words are written, flushed but not closed.
+     * @param format HACK or RAW.
+     * @param stats filled with the time of each phase and the counters of the stream.
+     * @param diagnostics filled with the warnings found while assembling.
+     * @return the number of words written.
+     * @throws AssemblyException if the stream can't be read, assembled or written.
+     */
+    public static int assemble(InputStream in, OutputStream out, OutputFormat format, AssemblyStats stats,
+                               List<String> diagnostics) {
+        if (format == OutputFormat.ROM) {
+            throw new AssemblyException("ROM images start with their word count and can't be streamed, "
+                                        + "use hack or raw");
+        }
+        WordOutput output = new WordOutput(out, format);
+        StreamingAssembler assembler = new StreamingAssembler(output);
+        try {
+            assembler.assemble(new Parser(new FlushingInputStream(in, output)), stats, diagnostics);
+            output.flush();
+            stats.setBytesWritten(output.getBytesWritten());
+        } catch (IOException e) {
+            throw new AssemblyException("Could not write the assembled words.", e);
+        }
+        return assembler.next;
+    }
+
+    // the one pass, resolving symbols with SymbolResolver as Assembler's first pass does, but writing words instead
+    // of keeping them.
+    private void assemble(Parser parser, AssemblyStats stats, List<String> diagnostics) throws IOException {
+        SymbolTable table = new SymbolTable();
+        SymbolResolver resolver = new SymbolResolver(table, diagnostics);
+        CInstructionCache cache = new CInstructionCache(Assembler.MAPPER);
+
+        stats.begin(AssemblyStats.Phase.FIRST_PASS);
+        while (parser.hasMoreCommands()) {
+            parser.advance();
+
+            Command commandType = parser.getCommandType();
+            stats.count(commandType);
+            switch (commandType) {
+                case C_COMMAND:
+                    int word = parser.encode(cache);
+                    if (word < 0) {
+                        throw new AssemblyException("Bad C instruction", parser.getLineNumber());
+                    }
+                    add(word);
+                    break;
+                case A_COMMAND:
+                    int symbolClass = parser.getSymbolClass();
+                    String variable = ((symbolClass & SymbolTable.NUMERIC) != 0) ? null : parser.getSymbol();
+                    int address = resolver.resolve(variable, symbolClass, parser.getLineNumber());
+                    if (address != SymbolResolver.UNRESOLVED) {
+                        add(address);
+                    } else {
+                        // a label further down, held back on the label's fix-up chain.
+                        hold(-2 - resolver.link(variable, parser.getLineNumber(), next));
+                    }
+                    break;
+                case L_COMMAND:
+                    // patches the held back words waiting on this label, and writes what that frees up.
+                    int chain = resolver.define(parser.getSymbol(), parser.getLineNumber(), next);
+                    if (chain != InstructionList.NO_FIX_UP) {
+                        resolve(chain, CInstructionMapper.encodeAddress(next, parser.getLineNumber()));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        stats.end(AssemblyStats.Phase.FIRST_PASS);
+
+        // anything left waiting references a label that was never defined, the first one used is reported.
+        stats.begin(AssemblyStats.Phase.RESOLVE);
+        resolver.checkDefined();
+        stats.end(AssemblyStats.Phase.RESOLVE);
+        stats.setSourceLines(parser.getLineNumber());
+        stats.countSymbols(table, resolver.getVariableCount());
+        stats.countCache(cache);
+    }
+
+    // adds a known word, writing it right away unless earlier words are held back.
+    private void add(int word) throws IOException {
+        if (flushed == next) {
+            output.write(word);
+            flushed++;
+            next++;
+            return;
+        }
+        hold(word);
+    }
+
+    // holds back a word at the next address.
+    private void hold(int word) {
+        if (next - flushed == pending.length) {
+            grow();
+        }
+        pending[next & (pending.length - 1)] = word;
+        next++;
+    }
+
+    // patches every held back word on a fix-up chain, then writes every word up to the next one still waiting.
+    private void resolve(int last, int word) throws IOException {
+        int mask = pending.length - 1;
+        int address = last;
+        while (address != InstructionList.NO_FIX_UP) {
+            int previous = -2 - pending[address & mask];
+            pending[address & mask] = word;
+            address = previous;
+        }
+        while (flushed < next && pending[flushed & mask] >= 0) {
+            output.write(pending[flushed & mask]);
+            flushed++;
+        }
+    }
+
+    // doubles the room for held back words, each word stays at its address.
+    private void grow() {
+        int[] bigger = new int[pending.length * 2];
+        for (int address = flushed; address < next; address++) {
+            bigger[address & (bigger.length - 1)] = pending[address & (pending.length - 1)];
+        }
+        pending = bigger;
+    }
+
+    // writes words in HACK or RAW format.
+    private static class WordOutput {
+        private final HackWriter hack;
+        private final DataOutputStream raw;
+
+        WordOutput(OutputStream out, OutputFormat format) {
+            this.hack = (format == OutputFormat.HACK) ? new HackWriter(out) : null;
+            this.raw = (format == OutputFormat.HACK) ? null
+                       : new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        }
+
+        void write(int word) throws IOException {
+            if (hack != null) {
+                hack.write(word);
+            } else {
+                raw.writeShort(word);
+            }
+        }
+
+        void flush() throws IOException {
+            if (hack != null) {
+                hack.flush();
+            } else {
+                raw.flush();
+            }
+        }
+
+        long getBytesWritten() {
+            return (hack != null) ? hack.getBytesWritten() : raw.size();
+        }
+    }
+
+    // flushes the words written so far before waiting on input, so the next program in the pipe isn't kept waiting.
+    private static class FlushingInputStream extends FilterInputStream {
+        private final WordOutput output;
+
+        FlushingInputStream(InputStream in, WordOutput output) {
+            super(in);
+            this.output = output;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (in.available() == 0) {
+                output.flush();
+            }
+            return in.read(buffer, offset, length);
+        }
+    }
+
+}
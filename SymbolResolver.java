@@ -0,0 +1,190 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles the symbols of the first pass, shared by every front end so they check, allocate and report symbols the
+ * same way.
+ * Constants are checked against the largest address. Symbols already in the symbolTable resolve right away, a new
+ * name with a lowercase letter is a variable given the next RAM address from 16, and an all caps name is a label
+ * further down. An A instruction waiting on a label is linked onto the label's fix-up chain, each instruction on it
+ * pointing back to the one before as InstructionList does, until the label is defined and the front end patches
+ * the chain wherever it keeps its words.
+ *
+ * The checks alone are used by ParallelAssembler, whose chunks don't resolve any symbol.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class SymbolResolver {
+
+    /**
+     * Returned by resolve for an A instruction naming a label that isn't defined yet.
+     */
+    public static final int UNRESOLVED = -1;
+
+    // the first RAM address given to a variable.
+    private static final int FIRST_VARIABLE = 16;
+
+    // instanced variables, each label waiting to be defined has the address of the last instruction on its chain
+    // and the line of the first.
+    private final SymbolTable table;
+    private final List<String> diagnostics;
+    private final Map<String, int[]> fixUps = new HashMap<>();
+    private int currentVariableValue = FIRST_VARIABLE;
+
+    /**
+     * @param table the symbolTable of the program, filled with its labels and variables.
+     * @param diagnostics filled with the warnings found while defining labels.
+     */
+    public SymbolResolver(SymbolTable table, List<String> diagnostics) {
+        this.table = table;
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Resolves the symbol of an A instruction, allocating a new variable when needed.
+     * @param symbol the symbol, or null if it's a constant.
+     * @param symbolClass the class of the symbol, from Parser.getSymbolClass.
+     * @param lineNumber the source line of the instruction.
+     * @return the machine word, or UNRESOLVED if the symbol is a label that isn't defined yet, see link.
+     * @throws AssemblyException if the constant is out of range or the name isn't valid.
+     */
+    public int resolve(String symbol, int symbolClass, int lineNumber) {
+        if (symbol == null) {
+            return CInstructionMapper.encodeAddress(constant(symbolClass, lineNumber), lineNumber);
+        }
+        int address = table.get(symbol);
+        if (address != SymbolTable.NOT_FOUND) {
+            return CInstructionMapper.encodeAddress(address, lineNumber);
+        }
+        if (isLabel(symbol, symbolClass, lineNumber)) {
+            return UNRESOLVED;
+        }
+        table.addEntry(symbol, currentVariableValue);
+        return CInstructionMapper.encodeAddress(currentVariableValue++, lineNumber);
+    }
+
+    /**
+     * Links an A instruction onto the fix-up chain of the label it names.
+     * @param label the label.
+     * @param lineNumber the source line of the instruction.
+     * @param address the address the instruction is kept at.
+     * @return the address of the instruction before it on the chain, or InstructionList.NO_FIX_UP.
+     */
+    public int link(String label, int lineNumber, int address) {
+        int[] chain = fixUps.computeIfAbsent(label, key -> new int[] {InstructionList.NO_FIX_UP, lineNumber});
+        int previous = chain[0];
+        chain[0] = address;
+        return previous;
+    }
+
+    /**
+     * Defines the label of an L command. The first definition of a label wins, later ones are diagnostics.
+     * @param symbol the label as written.
+     * @param lineNumber the source line of the label.
+     * @param address the ROM address of the instruction after the label.
+     * @return the address of the last instruction on the label's fix-up chain, to be patched with the label's
+     *         address, or InstructionList.NO_FIX_UP.
+     * @throws AssemblyException if the name isn't a valid label, or the address doesn't fit in the instructions
+     *         waiting on it.
+     */
+    public int define(String symbol, int lineNumber, int address) {
+        return place(labelName(symbol, lineNumber), lineNumber, address);
+    }
+
+    /**
+     * Defines a label already checked and uppercased by labelName, as the chunks of ParallelAssembler hold them.
+     * @param label the label.
+     * @param lineNumber the source line of the label.
+     * @param address the ROM address of the instruction after the label.
+     * @return the address of the last instruction on the label's fix-up chain, or InstructionList.NO_FIX_UP.
+     * @throws AssemblyException if the address doesn't fit in the instructions waiting on the label.
+     */
+    public int place(String label, int lineNumber, int address) {
+        if (table.getOrInsert(label, address) != SymbolTable.NOT_FOUND) {
+            diagnostics.add("Symbol " + label + " at line " + lineNumber
+                            + " is already defined, keeping the first definition");
+            return InstructionList.NO_FIX_UP;
+        }
+        int[] chain = fixUps.remove(label);
+        if (chain == null) {
+            return InstructionList.NO_FIX_UP;
+        }
+        // reported at the first instruction waiting on the label.
+        CInstructionMapper.encodeAddress(address, chain[1]);
+        return chain[0];
+    }
+
+    /**
+     * Checks that every label referenced was defined.
+     * @throws AssemblyException for the undefined label referenced on the lowest line.
+     */
+    public void checkDefined() {
+        String undefined = null;
+        int line = 0;
+        for (Map.Entry<String, int[]> chain : fixUps.entrySet()) {
+            if (undefined == null || chain.getValue()[1] < line) {
+                undefined = chain.getKey();
+                line = chain.getValue()[1];
+            }
+        }
+        if (undefined != null) {
+            throw new AssemblyException("Undefined label " + undefined, line);
+        }
+    }
+
+    /**
+     * @return the number of variables allocated in RAM.
+     */
+    public int getVariableCount() {
+        return currentVariableValue - FIRST_VARIABLE;
+    }
+
+    /**
+     * @param symbolClass the class of a numeric symbol.
+     * @param lineNumber the source line of the symbol.
+     * @return the value of the constant.
+     * @throws AssemblyException if the constant doesn't fit in an A instruction.
+     */
+    static int constant(int symbolClass, int lineNumber) {
+        int value = symbolClass & SymbolTable.VALUE_MASK;
+        if (value > Assembler.MAX_ADDRESS) {
+            throw new AssemblyException("Constant out of range", lineNumber);
+        }
+        return value;
+    }
+
+    /**
+     * Tells a label from a variable, for a symbol that isn't predefined.
+     * @param symbol the symbol of an A instruction.
+     * @param symbolClass the class of the symbol.
+     * @param lineNumber the source line of the symbol.
+     * @return true for a label, all caps, false for a variable.
+     * @throws AssemblyException if the name isn't valid.
+     */
+    static boolean isLabel(String symbol, int symbolClass, int lineNumber) {
+        if ((symbolClass & SymbolTable.VALID) == 0) {
+            throw new AssemblyException("Bad variable name " + symbol, lineNumber);
+        }
+        return (symbolClass & SymbolTable.LABEL) != 0;
+    }
+
+    /**
+     * @param symbol the symbol of an L command as written.
+     * @param lineNumber the source line of the label.
+     * @return the label, uppercased.
+     * @throws AssemblyException if the name isn't valid, or isn't all caps once uppercased.
+     */
+    static String labelName(String symbol, int lineNumber) {
+        String label = symbol.toUpperCase();
+        int labelClass = SymbolTable.classify(label);
+        if ((labelClass & SymbolTable.VALID) == 0) {
+            throw new AssemblyException("Bad variable name", lineNumber);
+        }
+        if ((labelClass & SymbolTable.LABEL) == 0) {
+            throw new AssemblyException("Bad label name", lineNumber);
+        }
+        return label;
+    }
+
+}
@@ -1,65 +1,129 @@
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Handles the symbolTable data structure. Includes methods for interacting with the table through symbolTable objects.
+ * Predefined symbols are found through a perfect hash over their first and last characters and length, and never
+ * enter the table itself. Every other symbol lives in an open addressing table: the characters of each key are copied
+ * into one char arena, and slots hold the key's offset, length, hash and int address side by side.
  * @author Mark Vincent II
  * @version 1.0
  */
 public class SymbolTable {
 
     // constants
-    private final String INITIAL_VALID_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_$.:";
-    private final String ALL_VALID_CHARS = INITIAL_VALID_CHARS + "0123456789";
+    private static final String INITIAL_VALID_CHARS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_$.:";
+    private static final String ALL_VALID_CHARS = INITIAL_VALID_CHARS + "0123456789";
 
+    // character classes of every ASCII character, anything outside of ASCII has no class.
+    private static final byte INITIAL_CHAR = 1;
+    private static final byte NAME_CHAR    = 2;
+    private static final byte DIGIT_CHAR   = 4;
+    private static final byte LOWER_CHAR   = 8;
+    private static final byte[] CHAR_CLASSES = new byte[128];
+    static {
+        for (char c : INITIAL_VALID_CHARS.toCharArray()) {
+            CHAR_CLASSES[c] |= INITIAL_CHAR;
+        }
+        for (char c : ALL_VALID_CHARS.toCharArray()) {
+            CHAR_CLASSES[c] |= NAME_CHAR;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_CLASSES[c] |= DIGIT_CHAR;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_CLASSES[c] |= LOWER_CHAR;
+        }
+    }
+
+    /**
+     * Flags of a symbol class, see classify(). The value of a numeric symbol is held in the bits of VALUE_MASK.
+     * NUMERIC: every character is a digit. VALID: a valid symbol name. LABEL: no lower case characters, a label name.
+     */
+    public static final int NUMERIC    = 1 << 24;
+    public static final int VALID      = 1 << 25;
+    public static final int LABEL      = 1 << 26;
+    public static final int VALUE_MASK = NUMERIC - 1;
+
+    /**
+     * Returned by lookups when the symbol isn't in the table.
+     */
+    public static final int NOT_FOUND = -1;
+
+    // predefined symbols, placed by perfectHash() into PREDEFINED_SLOTS slots.
+    private static final int PREDEFINED_SLOTS = 32;
+    private static final String[] PREDEFINED_NAMES = new String[PREDEFINED_SLOTS];
+    private static final int[] PREDEFINED_ADDRESSES = new int[PREDEFINED_SLOTS];
+    static {
+        String[] names = {"R0", "R1", "R2", "R3", "R4", "R5", "R6", "R7", "R8", "R9", "R10", "R11", "R12", "R13",
+                          "R14", "R15", "SCREEN", "KBD", "SP", "LCL", "ARG", "THIS", "THAT"};
+        int[] addresses = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16384, 24576, 0, 1, 2, 3, 4};
+        for (int i = 0; i < names.length; i++) {
+            int slot = perfectHash(names[i]);
+            if (PREDEFINED_NAMES[slot] != null) {
+                throw new IllegalStateException("Predefined symbols collide: " + names[i]);
+            }
+            PREDEFINED_NAMES[slot] = names[i];
+            PREDEFINED_ADDRESSES[slot] = addresses[i];
+        }
+    }
+
+    // constants for the table of every other symbol.
+    private static final int INITIAL_SLOTS = 256;
+    private static final int INITIAL_ARENA = 4096;
 
-    // instanced variables.
-    private HashMap<String, String> symbolTable;
+    // instanced variables, slots are empty while their length is 0.
+    private char[] arena = new char[INITIAL_ARENA];
+    private int    arenaSize;
+    private int[]  keyOffsets = new int[INITIAL_SLOTS];
+    private int[]  keyLengths = new int[INITIAL_SLOTS];
+    private int[]  keyHashes = new int[INITIAL_SLOTS];
+    private int[]  addresses = new int[INITIAL_SLOTS];
+    private int    size;
 
 
     /**
-     * Handles initializing the symbolTable with all predefined symbols.
+     * Handles initializing the symbolTable, predefined symbols are always present.
      * pre: construct a symbolTable object within a class.
-     * post: a default symbolTable hashMap with all predefined symbols as key, value pairs.
+     * post: an empty table, every lookup also sees the predefined symbols.
      */
     public SymbolTable() {
+    }
+
+    /**
+     * Handles initializing a symbolTable with room for a known number of symbols, so it doesn't grow while filled.
+     * post: an empty table with room for capacity symbols besides the predefined ones.
+     * @param capacity the number of labels and variables the table will hold.
+     */
+    public SymbolTable(int capacity) {
+        int slots = INITIAL_SLOTS;
+        while (slots < capacity * 2) {
+            slots *= 2;
+        }
+        keyOffsets = new int[slots];
+        keyLengths = new int[slots];
+        keyHashes = new int[slots];
+        addresses = new int[slots];
+    }
 
-        // Initializes symbolTable with predefined values.
-        symbolTable = new HashMap<>();
-        symbolTable.put("R0", "0");
-        symbolTable.put("R1", "1");
-        symbolTable.put("R2", "2");
-        symbolTable.put("R3", "3");
-        symbolTable.put("R4", "4");
-        symbolTable.put("R5", "5");
-        symbolTable.put("R6", "6");
-        symbolTable.put("R7", "7");
-        symbolTable.put("R8", "8");
-        symbolTable.put("R9", "9");
-        symbolTable.put("R10", "10");
-        symbolTable.put("R11", "11");
-        symbolTable.put("R12", "12");
-        symbolTable.put("R13", "13");
-        symbolTable.put("R14", "14");
-        symbolTable.put("R15", "15");
-        symbolTable.put("SCREEN", "16384");
-        symbolTable.put("KBD", "24576");
-        symbolTable.put("SP", "0");
-        symbolTable.put("LCL", "1");
-        symbolTable.put("ARG", "2");
-        symbolTable.put("THIS", "3");
-        symbolTable.put("THAT", "4");
-
-    }
-
-    /**
-     * Handles adding new key value pairs into the symbolTable.
+    /**
+     * Handles adding new key value pairs into the symbolTable. Predefined symbols can't be replaced.
      * @param symbol the symbol, or key.
-     * @param address the address, or value. Though it's a String, I've done this to be in parallel with CInstructionMapper.class
+     * @param address the address, or value.
      * @return if the entry had been added to the symbolTable successfully.
      */
-    public boolean addEntry(String symbol, String address) {
-        symbolTable.put(symbol, address);
-        return symbolTable.containsKey(symbol);
+    public boolean addEntry(String symbol, int address) {
+        if (predefined(symbol) != NOT_FOUND) {
+            return false;
+        }
+        int slot = findSlot(symbol, hash(symbol));
+        if (keyLengths[slot] == 0) {
+            insert(slot, symbol, hash(symbol), address);
+        } else {
+            addresses[slot] = address;
+        }
+        return true;
     }
 
     /**
@@ -68,63 +132,321 @@ public class SymbolTable {
      * @return if the key is already inside of the symbolTable.
      */
     public boolean contains(String symbol) {
-        return symbolTable.containsKey(symbol);
+        return get(symbol) != NOT_FOUND;
     }
 
 
     /**
      * Handles retreiving a integer value from the symbolTable, based on the symbol provided.
      * @param symbol the key to be used in looking up a value.
-     * @return the int associated with the key provided.
+     * @return the int associated with the key provided, or NOT_FOUND.
      */
     public int getAddress(String symbol) {
-        return Integer.parseInt(symbolTable.get(symbol));
+        return get(symbol);
     }
 
     /**
-     * Handles checking if the symbol provided has a valid name. Goes off the predefined constants in this class.
-     * @param symbol the symbol to check.
-     * @return if the symbol is valid or not.
+     * Handles looking up a symbol with a single probe of the table.
+     * @param symbol the key to be used in looking up a value.
+     * @return the int associated with the key provided, or NOT_FOUND.
      */
-    public boolean validName(String symbol) {
+    public int get(String symbol) {
+        int address = predefined(symbol);
+        if (address != NOT_FOUND) {
+            return address;
+        }
+        int slot = findSlot(symbol, hash(symbol));
+        return (keyLengths[slot] != 0) ? addresses[slot] : NOT_FOUND;
+    }
+
+    /**
+     * Handles looking up a symbol held as ASCII bytes, without making a String of it, see get(String).
+     * @param buffer the bytes holding the symbol.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @return the address of the symbol, or NOT_FOUND if it isn't in the table.
+     */
+    public int get(byte[] buffer, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return NOT_FOUND;
+        }
+        int predefined = perfectHash(buffer[start], buffer[end - 1], length);
+        if (keyEquals(PREDEFINED_NAMES[predefined], buffer, start, end)) {
+            return PREDEFINED_ADDRESSES[predefined];
+        }
 
-        // Checks first character to be valid.
-        boolean valid = false;
-        for (int i = 0; i < INITIAL_VALID_CHARS.length(); i++) {
-            if (symbol.charAt(0) == INITIAL_VALID_CHARS.charAt(i)) {
-                valid = true;
+        // the same hash as String.hashCode() of the symbol, so both lookups find the same slot.
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + (buffer[i] & 0xFF);
+        }
+        hash ^= hash >>> 16;
+        int mask = keyLengths.length - 1;
+        for (int slot = hash & mask; keyLengths[slot] != 0; slot = (slot + 1) & mask) {
+            if (keyHashes[slot] == hash && keyLengths[slot] == length && keyEquals(slot, buffer, start)) {
+                return addresses[slot];
             }
         }
+        return NOT_FOUND;
+    }
 
-        // stops if the first character is not valid.
-        if (!valid) {
-            return false;
+    /**
+     * Handles looking up a symbol and adding it when missing, in one probe of the table.
+     * @param symbol the key.
+     * @param address the address to give the symbol if it isn't in the table yet.
+     * @return the address the symbol already had, or NOT_FOUND if it has just been added with the given address.
+     */
+    public int getOrInsert(String symbol, int address) {
+        int existing = predefined(symbol);
+        if (existing != NOT_FOUND) {
+            return existing;
+        }
+        int hash = hash(symbol);
+        int slot = findSlot(symbol, hash);
+        if (keyLengths[slot] != 0) {
+            return addresses[slot];
+        }
+        insert(slot, symbol, hash, address);
+        return NOT_FOUND;
+    }
+
+    /**
+     * @return the number of symbols in the table, not counting predefined symbols.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Handles copying every key value pair out of the symbolTable.
+     * @return a new map of every symbol, predefined ones included, and its address.
+     */
+    public Map<String, Integer> toMap() {
+        Map<String, Integer> map = new HashMap<>();
+        for (int slot = 0; slot < PREDEFINED_SLOTS; slot++) {
+            if (PREDEFINED_NAMES[slot] != null) {
+                map.put(PREDEFINED_NAMES[slot], PREDEFINED_ADDRESSES[slot]);
+            }
         }
+        for (int slot = 0; slot < keyLengths.length; slot++) {
+            if (keyLengths[slot] != 0) {
+                map.put(new String(arena, keyOffsets[slot], keyLengths[slot]), addresses[slot]);
+            }
+        }
+        return map;
+    }
 
+    /*
+    table helpers
+     */
 
-        // Begins checking the rest of the symbol.
-        String sub = symbol.substring(1);
-        for (int i = 0; i < sub.length(); i++) {
+    // looks up a predefined symbol through the perfect hash.
+    private static int predefined(String symbol) {
+        if (symbol.isEmpty()) {
+            return NOT_FOUND;
+        }
+        int slot = perfectHash(symbol);
+        return symbol.equals(PREDEFINED_NAMES[slot]) ? PREDEFINED_ADDRESSES[slot] : NOT_FOUND;
+    }
 
-            // checks each character of sub vs ALL_VALID_CHARS
-            boolean thisCharValid = false;
-            for (int j = 0; j < ALL_VALID_CHARS.length(); j++) {
-                // if sub[i] is inside of ALL_VALID_CHARS, it's valid.
-                if (sub.charAt(i) == ALL_VALID_CHARS.charAt(j)) {
-                    thisCharValid = true;
-                }
+    // the perfect hash of the predefined symbols, no two of them share a slot.
+    private static int perfectHash(String symbol) {
+        return perfectHash(symbol.charAt(0), symbol.charAt(symbol.length() - 1), symbol.length());
+    }
+
+    private static int perfectHash(int first, int last, int length) {
+        return (first * 18 + last * 22 + length) & (PREDEFINED_SLOTS - 1);
+    }
+
+    // hashes the characters of a symbol.
+    private static int hash(String symbol) {
+        int hash = symbol.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    // finds the slot holding the symbol, or the empty slot where it belongs.
+    private int findSlot(String symbol, int hash) {
+        int mask = keyLengths.length - 1;
+        int slot = hash & mask;
+        while (keyLengths[slot] != 0) {
+            if (keyHashes[slot] == hash && keyEquals(slot, symbol)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // compares the key held in a slot with a symbol.
+    private boolean keyEquals(int slot, String symbol) {
+        int length = keyLengths[slot];
+        if (length != symbol.length()) {
+            return false;
+        }
+        int offset = keyOffsets[slot];
+        for (int i = 0; i < length; i++) {
+            if (arena[offset + i] != symbol.charAt(i)) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            // if thisCharValid is false, then it's a invalid name.
-            if (!thisCharValid) {
+    // compares the key held in a slot with a symbol held as bytes of the same length.
+    private boolean keyEquals(int slot, byte[] buffer, int start) {
+        int offset = keyOffsets[slot];
+        for (int i = 0; i < keyLengths[slot]; i++) {
+            if (arena[offset + i] != (buffer[start + i] & 0xFF)) {
                 return false;
             }
         }
+        return true;
+    }
 
-        // if method didn't already return false, then this symbol is valid.
+    // compares a predefined name, or no name, with a symbol held as bytes.
+    private static boolean keyEquals(String name, byte[] buffer, int start, int end) {
+        if (name == null || name.length() != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != (buffer[start + i] & 0xFF)) {
+                return false;
+            }
+        }
         return true;
     }
 
+    // fills an empty slot, copying the symbol into the arena. Grows the table when it is half full.
+    private void insert(int slot, String symbol, int hash, int address) {
+        int length = symbol.length();
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        symbol.getChars(0, length, arena, arenaSize);
+        keyOffsets[slot] = arenaSize;
+        keyLengths[slot] = length;
+        keyHashes[slot] = hash;
+        addresses[slot] = address;
+        arenaSize += length;
+        size++;
+        if (size * 2 > keyLengths.length) {
+            rehash();
+        }
+    }
+
+    // doubles the number of slots, keys stay where they are in the arena.
+    private void rehash() {
+        int[] oldOffsets = keyOffsets;
+        int[] oldLengths = keyLengths;
+        int[] oldHashes = keyHashes;
+        int[] oldAddresses = addresses;
+        int capacity = oldLengths.length * 2;
+        keyOffsets = new int[capacity];
+        keyLengths = new int[capacity];
+        keyHashes = new int[capacity];
+        addresses = new int[capacity];
+        int mask = capacity - 1;
+        for (int old = 0; old < oldLengths.length; old++) {
+            if (oldLengths[old] != 0) {
+                int slot = oldHashes[old] & mask;
+                while (keyLengths[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keyOffsets[slot] = oldOffsets[old];
+                keyLengths[slot] = oldLengths[old];
+                keyHashes[slot] = oldHashes[old];
+                addresses[slot] = oldAddresses[old];
+            }
+        }
+    }
+
+    /**
+     * Handles classifying a symbol held as ASCII bytes in a single scan through the character class table. Decides if
+     * the symbol is a number (and its value), a valid name, and a label name all at once.
+     * @param buffer the bytes holding the symbol.
+     * @param start the index of the first character.
+     * @param end the index after the last character.
+     * @return the NUMERIC, VALID and LABEL flags of the symbol, OR-ed with its value if it is NUMERIC. Numbers too
+     *         large for VALUE_MASK hold VALUE_MASK.
+     */
+    public static int classify(byte[] buffer, int start, int end) {
+        if (start >= end) {
+            return 0;
+        }
+        int first = classOf(buffer[start]);
+        int all = first;
+        int any = first;
+        int value = buffer[start] - '0';
+        for (int i = start + 1; i < end; i++) {
+            int charClass = classOf(buffer[i]);
+            all &= charClass;
+            any |= charClass;
+            value = Math.min(value * 10 + (buffer[i] - '0'), VALUE_MASK);
+        }
+        return flags(first, all, any, value);
+    }
+
+    /**
+     * Handles classifying a symbol held as a String, see classify(byte[], int, int).
+     * @param symbol the symbol to classify.
+     * @return the NUMERIC, VALID and LABEL flags of the symbol, OR-ed with its value if it is NUMERIC.
+     */
+    public static int classify(String symbol) {
+        if (symbol.isEmpty()) {
+            return 0;
+        }
+        int first = classOf(symbol.charAt(0));
+        int all = first;
+        int any = first;
+        int value = symbol.charAt(0) - '0';
+        for (int i = 1; i < symbol.length(); i++) {
+            int charClass = classOf(symbol.charAt(i));
+            all &= charClass;
+            any |= charClass;
+            value = Math.min(value * 10 + (symbol.charAt(i) - '0'), VALUE_MASK);
+        }
+        return flags(first, all, any, value);
+    }
+
+    /**
+     * Handles checking if the symbol provided has a valid name. Goes off the predefined constants in this class.
+     * @param symbol the symbol to check.
+     * @return if the symbol is valid or not.
+     */
+    public boolean validName(String symbol) {
+        return (classify(symbol) & VALID) != 0;
+    }
+
+    /**
+     * Handles telling the difference between @x and @LABEL, labels are all caps.
+     * @param symbol the symbol to check.
+     * @return if the symbol names a label, rather than a variable.
+     */
+    public boolean isLabelName(String symbol) {
+        return (classify(symbol) & LABEL) != 0;
+    }
+
+    // looks up the class of a character.
+    private static int classOf(int c) {
+        return (c >= 0 && c < CHAR_CLASSES.length) ? CHAR_CLASSES[c] : 0;
+    }
+
+    // turns the classes seen during a scan into symbol class flags.
+    private static int flags(int first, int all, int any, int value) {
+        int flags = 0;
+        if ((all & DIGIT_CHAR) != 0) {
+            flags |= NUMERIC | value;
+        }
+        if ((first & INITIAL_CHAR) != 0 && (all & NAME_CHAR) != 0) {
+            flags |= VALID;
+        }
+        if ((any & LOWER_CHAR) == 0) {
+            flags |= LABEL;
+        }
+        return flags;
+    }
+
     // DEBUGGING METHOD
     public static void main(String[] args) {
         // tests valid name engine.
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Handles staying resident and re-assembling ASM files as they change, so the JVM, the C instruction tables and the
+ * JIT compiled assembler stay warm between runs.
+ * Every file named by the arguments (files, directories and globs, as in BatchAssembler) is assembled once, then the
+ * directories holding them are watched. Changes arriving close together are gathered until the files have been quiet
+ * for DEBOUNCE_MILLIS, then only the ASM files that changed are assembled again. Directories named by the arguments
+ * are watched recursively, new ASM files and directories below them are picked up as they appear.
+ * Runs until the process is stopped.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class WatchAssembler {
+
+    // constants, how long the files must be quiet before assembling.
+    private static final long DEBOUNCE_MILLIS = 100;
+    private static final String ASM_EXTENSION = ".asm";
+
+    // instanced variables.
+    private final List<String> arguments;
+    private final AssemblerOptions options;
+    private final WatchService watcher;
+    private final Set<Path> watched = new HashSet<>();
+    private final Set<Path> recursiveRoots = new HashSet<>();
+
+    private WatchAssembler(List<String> arguments, AssemblerOptions options) throws IOException {
+        this.arguments = arguments;
+        this.options = options;
+        this.watcher = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Assembles every file named by the arguments, then keeps re-assembling them as they change.
+     * @param arguments files, directories and globs.
+     * @param options the options every file is assembled with.
+     * @return false if watching couldn't be started, otherwise only returns once interrupted.
+     */
+    public static boolean run(List<String> arguments, AssemblerOptions options) {
+        try {
+            WatchAssembler watch = new WatchAssembler(arguments, options);
+            try {
+                watch.watch();
+            } finally {
+                watch.watcher.close();
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Could not watch for changes: " + e.getMessage());
+            return false;
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    // the watch loop.
+    private void watch() throws IOException, InterruptedException {
+        List<Path> files = BatchAssembler.expand(arguments);
+        registerAll(files);
+        if (!files.isEmpty()) {
+            assemble(files);
+        }
+        System.out.println("Watching for changes, press Ctrl+C to stop.");
+
+        while (true) {
+            // waits for the first change, then gathers changes until the files are quiet.
+            Set<Path> changed = new LinkedHashSet<>();
+            WatchKey key = watcher.take();
+            do {
+                collect(key, changed);
+                key = watcher.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+            } while (key != null);
+
+            // only the changed files that are still named by the arguments.
+            List<Path> current = BatchAssembler.expand(arguments);
+            registerAll(current);
+            List<Path> toAssemble = new ArrayList<>();
+            for (Path file : current) {
+                if (changed.contains(file.toAbsolutePath().normalize())) {
+                    toAssemble.add(file);
+                }
+            }
+            if (!toAssemble.isEmpty()) {
+                assemble(toAssemble);
+            }
+        }
+    }
+
+    // assembles files as a batch, which prints a line per file.
+    private void assemble(List<Path> files) {
+        List<String> names = new ArrayList<>();
+        for (Path file : files) {
+            names.add(file.toString());
+        }
+        BatchAssembler.run(names, options);
+    }
+
+    // gathers the ASM files of a watch key's events, registering any new directory below a recursive root.
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost, everything is assumed to have changed.
+                for (Path file : BatchAssembler.expand(arguments)) {
+                    changed.add(file.toAbsolutePath().normalize());
+                }
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context()).toAbsolutePath().normalize();
+            if (Files.isDirectory(path) && isBelowRecursiveRoot(path)) {
+                registerTree(path);
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(file -> file.toString().endsWith(ASM_EXTENSION)).forEach(changed::add);
+                }
+            } else if (path.toString().endsWith(ASM_EXTENSION)) {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            watched.remove(directory);
+        }
+    }
+
+    // watches the directory of every file, and every directory named by the arguments with everything below it.
+    private void registerAll(List<Path> files) throws IOException {
+        for (Path file : files) {
+            Path parent = file.toAbsolutePath().normalize().getParent();
+            if (parent != null && Files.isDirectory(parent)) {
+                register(parent);
+            }
+        }
+        for (String argument : arguments) {
+            Path path = Paths.get(argument).toAbsolutePath().normalize();
+            if (Files.isDirectory(path) && recursiveRoots.add(path)) {
+                registerTree(path);
+            }
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path directory : (Iterable<Path>) walk.filter(Files::isDirectory)::iterator) {
+                register(directory);
+            }
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        if (watched.add(directory)) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    private boolean isBelowRecursiveRoot(Path path) {
+        for (Path root : recursiveRoots) {
+            if (path.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
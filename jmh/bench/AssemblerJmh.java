@@ -0,0 +1,248 @@
+package bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Times the parser, symbolTable lookups, C instruction encoding and full assembly on each CorpusGenerator profile
+ * under JMH, which forks, warms up and measures so the figures hold up across JVMs and changes. AssemblerBenchmark
+ * times the same stages without JMH.
+ *
+ * JMH won't run benchmarks in the default package, and a named package can't import the assembler, so the entry
+ * points are looked up once as constant method handles, which the JIT inlines like direct calls.
+ * Usage: gradle jmh [-PjmhArgs="AssemblerJmh.assemble -p profile=label"]
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AssemblerJmh {
+
+    // constants, the entry points of the assembler.
+    private static final MethodHandle GENERATE;
+    private static final MethodHandle NEW_PARSER;
+    private static final MethodHandle HAS_MORE_COMMANDS;
+    private static final MethodHandle ADVANCE;
+    private static final MethodHandle ASSEMBLE;
+    private static final MethodHandle ASSEMBLE_PARALLEL;
+    private static final MethodHandle GET_COMMAND_TYPE;
+    private static final MethodHandle GET_SYMBOL_CLASS;
+    private static final MethodHandle GET_SYMBOL;
+    private static final MethodHandle GET_CLEAN_LINE;
+    private static final MethodHandle NEW_SYMBOL_TABLE;
+    private static final MethodHandle GET;
+    private static final MethodHandle GET_OR_INSERT;
+    private static final MethodHandle NEW_MAPPER;
+    private static final MethodHandle ENCODE;
+    private static final Class<?> PROFILE;
+    private static final long SEED;
+    private static final int NUMERIC;
+    private static final int NOT_FOUND;
+    private static final int FIRST_VARIABLE = 16;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> generator = Class.forName("CorpusGenerator");
+            Class<?> parser = Class.forName("Parser");
+            Class<?> result = Class.forName("AssemblyResult");
+            Class<?> symbolTable = Class.forName("SymbolTable");
+            Class<?> mapper = Class.forName("CInstructionMapper");
+            PROFILE = Class.forName("CorpusGenerator$Profile");
+            SEED = generator.getField("DEFAULT_SEED").getLong(null);
+            NUMERIC = symbolTable.getField("NUMERIC").getInt(null);
+            NOT_FOUND = symbolTable.getField("NOT_FOUND").getInt(null);
+            GENERATE = lookup.findStatic(generator, "generate",
+                                         MethodType.methodType(byte[].class, PROFILE, int.class, long.class))
+                             .asType(MethodType.methodType(byte[].class, Object.class, int.class, long.class));
+            NEW_PARSER = lookup.findConstructor(parser, MethodType.methodType(void.class, ByteBuffer.class))
+                               .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            HAS_MORE_COMMANDS = lookup.findVirtual(parser, "hasMoreCommands", MethodType.methodType(boolean.class))
+                                      .asType(MethodType.methodType(boolean.class, Object.class));
+            ADVANCE = lookup.findVirtual(parser, "advance", MethodType.methodType(void.class))
+                            .asType(MethodType.methodType(void.class, Object.class));
+            ASSEMBLE = lookup.findStatic(Class.forName("Assembler"), "assemble",
+                                         MethodType.methodType(result, ByteBuffer.class))
+                             .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            ASSEMBLE_PARALLEL = lookup.findStatic(Class.forName("ParallelAssembler"), "assemble",
+                                                  MethodType.methodType(result, ByteBuffer.class))
+                                      .asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            GET_COMMAND_TYPE = lookup.findVirtual(parser, "getCommandType",
+                                                  MethodType.methodType(Class.forName("Command")))
+                                     .asType(MethodType.methodType(Object.class, Object.class));
+            GET_SYMBOL_CLASS = lookup.findVirtual(parser, "getSymbolClass", MethodType.methodType(int.class))
+                                     .asType(MethodType.methodType(int.class, Object.class));
+            GET_SYMBOL = lookup.findVirtual(parser, "getSymbol", MethodType.methodType(String.class))
+                               .asType(MethodType.methodType(String.class, Object.class));
+            GET_CLEAN_LINE = lookup.findVirtual(parser, "getCleanLine", MethodType.methodType(String.class))
+                                   .asType(MethodType.methodType(String.class, Object.class));
+            NEW_SYMBOL_TABLE = lookup.findConstructor(symbolTable, MethodType.methodType(void.class))
+                                     .asType(MethodType.methodType(Object.class));
+            GET = lookup.findVirtual(symbolTable, "get", MethodType.methodType(int.class, String.class))
+                        .asType(MethodType.methodType(int.class, Object.class, String.class));
+            GET_OR_INSERT = lookup.findVirtual(symbolTable, "getOrInsert",
+                                               MethodType.methodType(int.class, String.class, int.class))
+                                  .asType(MethodType.methodType(int.class, Object.class, String.class, int.class));
+            NEW_MAPPER = lookup.findConstructor(mapper, MethodType.methodType(void.class))
+                               .asType(MethodType.methodType(Object.class));
+            ENCODE = lookup.findVirtual(mapper, "encode",
+                                        MethodType.methodType(int.class, byte[].class, int.class, int.class))
+                           .asType(MethodType.methodType(int.class, Object.class, byte[].class, int.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // instanced variables, the profile and size of the generated program.
+    @Param({"label", "variable", "comment"})
+    public String profile;
+
+    @Param({"100000"})
+    public int lines;
+
+    private byte[] source;
+
+    // the symbols of the symbolic A instructions, a table holding them, the C instructions and their mapper.
+    private String[] symbols;
+    private Object table;
+    private byte[][] cInstructions;
+    private Object mapper;
+
+    @Setup(Level.Trial)
+    public void generate() throws Throwable {
+        Object shape = null;
+        for (Object constant : PROFILE.getEnumConstants()) {
+            if (((Enum<?>) constant).name().equalsIgnoreCase(profile)) {
+                shape = constant;
+            }
+        }
+        if (shape == null) {
+            throw new IllegalArgumentException("Unknown profile " + profile);
+        }
+        source = (byte[]) GENERATE.invokeExact(shape, lines, SEED);
+
+        // gathers the symbols and C instructions the way AssemblerBenchmark does.
+        List<String> symbolList = new ArrayList<>();
+        List<byte[]> cList = new ArrayList<>();
+        Object parser = (Object) NEW_PARSER.invokeExact(ByteBuffer.wrap(source));
+        while ((boolean) HAS_MORE_COMMANDS.invokeExact(parser)) {
+            ADVANCE.invokeExact(parser);
+            String type = ((Enum<?>) (Object) GET_COMMAND_TYPE.invokeExact(parser)).name();
+            if (type.equals("A_COMMAND") && ((int) GET_SYMBOL_CLASS.invokeExact(parser) & NUMERIC) == 0) {
+                symbolList.add((String) GET_SYMBOL.invokeExact(parser));
+            } else if (type.equals("C_COMMAND")) {
+                cList.add(((String) GET_CLEAN_LINE.invokeExact(parser)).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        symbols = symbolList.toArray(new String[0]);
+        cInstructions = cList.toArray(new byte[0][]);
+        table = fill();
+        mapper = (Object) NEW_MAPPER.invokeExact();
+    }
+
+    // fills a symbolTable the way the first pass does, a new variable for every symbol not in it yet.
+    private Object fill() throws Throwable {
+        Object filled = (Object) NEW_SYMBOL_TABLE.invokeExact();
+        int next = FIRST_VARIABLE;
+        for (String symbol : symbols) {
+            if ((int) GET_OR_INSERT.invokeExact(filled, symbol, next) == NOT_FOUND) {
+                next++;
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * @return the number of commands, so the parse can't be optimized away.
+     */
+    @Benchmark
+    public long parse() throws Throwable {
+        Object parser = (Object) NEW_PARSER.invokeExact(ByteBuffer.wrap(source));
+        long commands = 0;
+        while ((boolean) HAS_MORE_COMMANDS.invokeExact(parser)) {
+            ADVANCE.invokeExact(parser);
+            commands++;
+        }
+        return commands;
+    }
+
+    /**
+     * Looks up every symbolic A instruction in a filled symbolTable.
+     * @param blackhole consumes each address.
+     */
+    @Benchmark
+    public void symbolTableGet(Blackhole blackhole) throws Throwable {
+        for (String symbol : symbols) {
+            blackhole.consume((int) GET.invokeExact(table, symbol));
+        }
+    }
+
+    /**
+     * Fills a new symbolTable with every symbolic A instruction, as the first pass does.
+     * @param blackhole consumes each address found, or NOT_FOUND for a new symbol.
+     */
+    @Benchmark
+    public void symbolTableGetOrInsert(Blackhole blackhole) throws Throwable {
+        Object filled = (Object) NEW_SYMBOL_TABLE.invokeExact();
+        int next = FIRST_VARIABLE;
+        for (String symbol : symbols) {
+            int address = (int) GET_OR_INSERT.invokeExact(filled, symbol, next);
+            if (address == NOT_FOUND) {
+                next++;
+            }
+            blackhole.consume(address);
+        }
+    }
+
+    /**
+     * Splits every C instruction into mnemonics and encodes it, without the cache.
+     * @param blackhole consumes each machine word.
+     */
+    @Benchmark
+    public void encode(Blackhole blackhole) throws Throwable {
+        for (byte[] text : cInstructions) {
+            blackhole.consume((int) ENCODE.invokeExact(mapper, text, 0, text.length));
+        }
+    }
+
+    /**
+     * @return the AssemblyResult of the sequential assembler.
+     */
+    @Benchmark
+    public Object assemble() throws Throwable {
+        return (Object) ASSEMBLE.invokeExact(ByteBuffer.wrap(source));
+    }
+
+    /**
+     * @return the AssemblyResult of the parallel assembler.
+     */
+    @Benchmark
+    public Object assembleParallel() throws Throwable {
+        return (Object) ASSEMBLE_PARALLEL.invokeExact(ByteBuffer.wrap(source));
+    }
+
+}
@@ -0,0 +1,125 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Compares the scalar and vector line scanners on a large input.
+ * First checks that both scanners give the Parser exactly the same commands and mnemonics, then times a full parse
+ * of the input with each one and prints the throughput.
+ *
+ * Lives in the vector/ source root with VectorLineScanner, compiled with --add-modules jdk.incubator.vector.
+ * Run through gradle lexerBenchmark [-PlexerArgs=...], or:
+ * Usage: java --add-modules jdk.incubator.vector LexerBenchmark [file.asm | line count]
+ * Without a file, a comment heavy program of the given number of lines (default 2,000,000) is generated in memory.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class LexerBenchmark {
+
+    // constants.
+    private static final int DEFAULT_LINES = 2000000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+
+        // gathers the input.
+        ByteBuffer input;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            try (FileChannel channel = FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ)) {
+                input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        } else {
+            input = generate(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES);
+        }
+
+        LineScanner scalar = new ScalarLineScanner();
+        LineScanner best = LineScanner.best();
+        if (best instanceof ScalarLineScanner) {
+            System.out.println("Vector scanner not available, run with --add-modules jdk.incubator.vector.");
+        }
+
+        // checks both scanners agree.
+        int lines = compare(input, scalar, best);
+        System.out.println("Scanners agree on " + lines + " lines (" + input.limit() / 1024 + " KB).");
+
+        // warms up and times each scanner.
+        for (int round = 1; round <= ROUNDS; round++) {
+            double scalarRate = throughput(input, scalar);
+            double bestRate = throughput(input, best);
+            System.out.printf("round %2d: scalar %8.1f MB/s | %s %8.1f MB/s%n", round, scalarRate,
+                              best.getClass().getSimpleName(), bestRate);
+        }
+    }
+
+    // parses the input with both scanners, exits if they ever disagree.
+    private static int compare(ByteBuffer input, LineScanner expected, LineScanner actual) {
+        Parser left = new Parser(input, expected);
+        Parser right = new Parser(input, actual);
+        while (left.hasMoreCommands()) {
+            left.advance();
+            right.advance();
+            boolean same = left.getCommandType() == right.getCommandType()
+                           && left.getCleanLine().equals(right.getCleanLine())
+                           && left.getDestKey() == right.getDestKey()
+                           && left.getCompKey() == right.getCompKey()
+                           && left.getJumpKey() == right.getJumpKey();
+            if (!same) {
+                System.err.println("Scanners disagree at line " + left.getLineNumber() + ": " + left.getRawLine());
+                System.exit(1);
+            }
+        }
+        if (right.hasMoreCommands()) {
+            System.err.println("Scanners disagree on the number of lines.");
+            System.exit(1);
+        }
+        return left.getLineNumber();
+    }
+
+    // parses the whole input, returns MB per second.
+    private static double throughput(ByteBuffer input, LineScanner scanner) {
+        long start = System.nanoTime();
+        Parser parser = new Parser(input, scanner);
+        int commands = 0;
+        while (parser.hasMoreCommands()) {
+            parser.advance();
+            if (parser.getCommandType() != Command.NO_COMMAND) {
+                commands++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (commands < 0) {
+            System.out.println(commands);
+        }
+        return (input.limit() / (1024.0 * 1024.0)) / (elapsed / 1e9);
+    }
+
+    // builds a comment heavy program, in the style of VM translator output.
+    private static ByteBuffer generate(int lines) {
+        String[] template = {
+            "// push constant 17, generated from Main.vm line 12 of the translator output",
+            "    @17              // load the constant",
+            "    D=A",
+            "    @SP",
+            "    AM=M+1           // bump the stack pointer",
+            "    A=A-1",
+            "    M=D",
+            "",
+            "(MAIN.LOOP_START)    // loop label",
+            "    @counter",
+            "    D=M;JEQ          // exit when the counter is zero",
+        };
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            text.append(template[i % template.length]).append('\n');
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+}
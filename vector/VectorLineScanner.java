@@ -0,0 +1,72 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Scans lines a whole vector of bytes at a time (32 bytes with AVX2, 64 with AVX-512), using the incubating Vector
+ * API. Finishes the bytes left over at the end of a range with the scalar scanner, so the indexes returned are always
+ * the same as ScalarLineScanner's.
+ * Kept in its own source root, vector/, so the main sources build without the incubating module. It is compiled
+ * against them with --add-modules jdk.incubator.vector, and run with the same flag. LineScanner.best() falls back to
+ * the scalar scanner when the class or the module is missing.
+ * @author Mark Alan Vincent II
+ * @version 1.0
+ */
+public class VectorLineScanner implements LineScanner {
+
+    // constants.
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LENGTH = SPECIES.length();
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    // finishes the tail of a range.
+    private final ScalarLineScanner scalar = new ScalarLineScanner();
+
+    @Override
+    public int lineEnd(ByteBuffer input, int from, int limit) {
+        int i = from;
+        for (; i + LENGTH <= limit; i += LENGTH) {
+            VectorMask<Byte> newlines = ByteVector.fromByteBuffer(SPECIES, input, i, ORDER).eq((byte) '\n');
+            if (newlines.anyTrue()) {
+                return i + newlines.firstTrue();
+            }
+        }
+        return scalar.lineEnd(input, i, limit);
+    }
+
+    @Override
+    public int skipBlanks(ByteBuffer input, int from, int limit) {
+        int i = from;
+        for (; i + LENGTH <= limit; i += LENGTH) {
+            ByteVector bytes = ByteVector.fromByteBuffer(SPECIES, input, i, ORDER);
+            VectorMask<Byte> code = bytes.compare(VectorOperators.GT, (byte) ' ')
+                                         .or(bytes.compare(VectorOperators.LT, (byte) 0));
+            if (code.anyTrue()) {
+                return i + code.firstTrue();
+            }
+        }
+        return scalar.skipBlanks(input, i, limit);
+    }
+
+    @Override
+    public int commentStart(ByteBuffer input, int from, int limit) {
+        // compares each byte and the byte after it, so the second load must also fit before limit.
+        int i = from;
+        for (; i + LENGTH < limit; i += LENGTH) {
+            VectorMask<Byte> first = ByteVector.fromByteBuffer(SPECIES, input, i, ORDER).eq((byte) '/');
+            if (first.anyTrue()) {
+                VectorMask<Byte> second = ByteVector.fromByteBuffer(SPECIES, input, i + 1, ORDER).eq((byte) '/');
+                VectorMask<Byte> comment = first.and(second);
+                if (comment.anyTrue()) {
+                    return i + comment.firstTrue();
+                }
+            }
+        }
+        return scalar.commentStart(input, i, limit);
+    }
+
+}